@@ -0,0 +1,209 @@
+package com.hoangtien2k3.commonlib.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Bounds the fan-out of enrichment calls to downstream services. Each downstream gets an AIMD
+ * concurrency limit that grows while latency stays close to the best observed latency and backs
+ * off on timeouts, 5xx and connection errors and latency spikes. Calls over the limit are shed
+ * instead of queued.
+ */
+public class EnrichmentExecutor {
+
+    public static final String USER_SERVICE = "user-service";
+    public static final String PRODUCT_SERVICE = "product-service";
+    public static final String ORDER_SERVICE = "order-service";
+
+    private final FanOutProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    public EnrichmentExecutor(FanOutProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The deadline for the enrichment calls of the current request: the configured budget, shortened
+     * to the deadline the caller announced through {@link RequestDeadline#HEADER}, so a nested fan-out
+     * never outlives its caller. The inbound deadline is bound to the request thread, so call this
+     * while assembling the pipeline, not from inside an operator.
+     */
+    public Instant deadline() {
+        Instant budget = Instant.now().plus(properties.getRequestDeadline());
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        Object inbound = requestAttributes == null
+            ? null
+            : requestAttributes.getAttribute(RequestDeadline.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return inbound instanceof Instant inboundDeadline && inboundDeadline.isBefore(budget) ? inboundDeadline : budget;
+    }
+
+    // concurrency to use for a flatMap over a batch of calls to the downstream
+    public int concurrency(String downstream) {
+        return limiter(downstream).currentLimit();
+    }
+
+    public <T> Mono<T> call(String downstream, Supplier<Mono<T>> call, Instant deadline) {
+        AdaptiveLimiter limiter = limiter(downstream);
+        return Mono.defer(() -> {
+            Duration remaining = Duration.between(Instant.now(), deadline);
+            if (remaining.isNegative() || remaining.isZero()) {
+                limiter.timeouts.increment();
+                return Mono.error(new TimeoutException("Request deadline exceeded before calling " + downstream));
+            }
+            if (!limiter.tryAcquire()) {
+                limiter.shed.increment();
+                return Mono.error(new RejectedExecutionException("Concurrency limit reached for " + downstream));
+            }
+            Duration timeout = remaining.compareTo(properties.getCallTimeout()) < 0 ? remaining : properties.getCallTimeout();
+            long start = System.nanoTime();
+            return hedge(limiter, call)
+                    .timeout(timeout)
+                    .doOnSuccess(value -> limiter.onSample(System.nanoTime() - start))
+                    .doOnError(throwable -> {
+                        if (throwable instanceof TimeoutException) {
+                            limiter.timeouts.increment();
+                        }
+                        if (isOverload(throwable)) {
+                            limiter.onDropped();
+                        } else {
+                            // a 4xx was answered by a healthy downstream, it only tells about the request
+                            limiter.onSample(System.nanoTime() - start);
+                        }
+                    })
+                    .doFinally(signal -> limiter.release())
+                    // read by the web clients, which send the time left to the downstream service
+                    .contextWrite(Context.of(RequestDeadline.CONTEXT_KEY, deadline));
+        });
+    }
+
+    // only used for idempotent reads; the hedge is skipped when the limiter has no room for it
+    private <T> Mono<T> hedge(AdaptiveLimiter limiter, Supplier<Mono<T>> call) {
+        Duration hedgeDelay = properties.getHedgeDelay();
+        if (hedgeDelay == null || hedgeDelay.isZero()) {
+            return call.get();
+        }
+        Mono<T> hedged = Mono.delay(hedgeDelay).flatMap(tick -> {
+            if (!limiter.tryAcquire()) {
+                return Mono.<T>empty();
+            }
+            limiter.hedges.increment();
+            return call.get().doFinally(signal -> limiter.release());
+        });
+        return Mono.firstWithValue(call.get(), hedged);
+    }
+
+    // timeouts, 5xx and connection errors; a hedged call reports the errors of both attempts as causes or suppressed
+    private static boolean isOverload(Throwable throwable) {
+        for (Throwable error = throwable; error != null; error = error.getCause()) {
+            if (error instanceof TimeoutException
+                    || error instanceof ConnectException
+                    || error instanceof WebClientRequestException
+                    || error instanceof WebClientResponseException response && response.getRawStatusCode() >= 500) {
+                return true;
+            }
+            for (Throwable suppressed : error.getSuppressed()) {
+                if (isOverload(suppressed)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private AdaptiveLimiter limiter(String downstream) {
+        return limiters.computeIfAbsent(downstream, name -> new AdaptiveLimiter(name, properties, meterRegistry));
+    }
+
+    private static final class AdaptiveLimiter {
+
+        private static final int BASELINE_RESET_SAMPLES = 1000;
+
+        private final int minLimit;
+        private final int maxLimit;
+        private final double backoffRatio;
+        private final double latencyTolerance;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double limit;
+        private long baselineNanos = Long.MAX_VALUE;
+        private long samples;
+
+        private final Counter shed;
+        private final Counter timeouts;
+        private final Counter hedges;
+
+        AdaptiveLimiter(String downstream, FanOutProperties properties, MeterRegistry meterRegistry) {
+            this.minLimit = properties.getMinLimit();
+            this.maxLimit = properties.getMaxLimit();
+            this.backoffRatio = properties.getBackoffRatio();
+            this.latencyTolerance = properties.getLatencyTolerance();
+            this.limit = properties.getInitialLimit();
+
+            Gauge.builder("enrichment.limiter.limit", this, AdaptiveLimiter::currentLimit)
+                    .tag("downstream", downstream)
+                    .register(meterRegistry);
+            Gauge.builder("enrichment.limiter.in-flight", inFlight, AtomicInteger::get)
+                    .tag("downstream", downstream)
+                    .register(meterRegistry);
+            this.shed = Counter.builder("enrichment.limiter.shed").tag("downstream", downstream).register(meterRegistry);
+            this.timeouts = Counter.builder("enrichment.limiter.timeouts").tag("downstream", downstream).register(meterRegistry);
+            this.hedges = Counter.builder("enrichment.limiter.hedges").tag("downstream", downstream).register(meterRegistry);
+        }
+
+        int currentLimit() {
+            return Math.max(minLimit, (int) limit);
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= currentLimit()) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        synchronized void onSample(long latencyNanos) {
+            // the baseline is re-learned periodically so one lucky sample does not pin the limit down
+            if (++samples % BASELINE_RESET_SAMPLES == 0) {
+                baselineNanos = latencyNanos;
+            }
+            baselineNanos = Math.min(baselineNanos, latencyNanos);
+            if (latencyNanos > baselineNanos * latencyTolerance) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight.get() * 2 >= limit) {
+                // +1 per round of `limit` successful calls, only while the limit is actually used
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+
+        synchronized void onDropped() {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        }
+    }
+}
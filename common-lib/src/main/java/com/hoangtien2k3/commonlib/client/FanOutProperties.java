@@ -0,0 +1,27 @@
+package com.hoangtien2k3.commonlib.client;
+
+import java.time.Duration;
+import lombok.Data;
+
+/**
+ * Settings of an {@link EnrichmentExecutor}, bound by each service under its own client prefix,
+ * e.g. {@code ecommerce.client.fan-out}.
+ */
+@Data
+public class FanOutProperties {
+
+    private int initialLimit = 20;
+    private int minLimit = 2;
+    private int maxLimit = 200;
+    // multiplicative decrease on timeouts, 5xx and connection errors and latency spikes
+    private double backoffRatio = 0.9;
+    // a call slower than this multiple of the best observed latency counts as congestion
+    private double latencyTolerance = 2.0;
+
+    private Duration callTimeout = Duration.ofSeconds(2);
+    // budget for all enrichment calls of one incoming request, an inbound deadline can only shorten it
+    private Duration requestDeadline = Duration.ofSeconds(4);
+    // send a second request when the first has not answered after this delay, unset disables hedging
+    private Duration hedgeDelay;
+
+}
@@ -0,0 +1,44 @@
+package com.hoangtien2k3.commonlib.client;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Propagates the deadline of a request to the services it calls. A caller sends the time it has left
+ * in the {@link #HEADER} header, in milliseconds rather than as an instant so clock skew between hosts
+ * does not matter. The receiving service stores the resolved deadline in the {@link #ATTRIBUTE}
+ * request attribute, and outgoing calls read it back from the {@link #CONTEXT_KEY} Reactor context entry.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Timeout";
+    public static final String ATTRIBUTE = RequestDeadline.class.getName();
+    public static final String CONTEXT_KEY = RequestDeadline.class.getName();
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * Resolves the deadline announced by an inbound request.
+     *
+     * @param timeoutHeader the {@link #HEADER} value, may be null.
+     * @param receivedAt    when the request was received.
+     * @return the deadline, or null when the header is missing or malformed.
+     */
+    public static Instant resolve(String timeoutHeader, Instant receivedAt) {
+        if (timeoutHeader == null || timeoutHeader.isBlank()) {
+            return null;
+        }
+        try {
+            return receivedAt.plusMillis(Math.max(0, Long.parseLong(timeoutHeader.trim())));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // the header value for a call made now, never negative
+    public static String remaining(Instant deadline) {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return String.valueOf(Math.max(0, remaining.toMillis()));
+    }
+}
@@ -0,0 +1,36 @@
+package com.hoangtien2k3.commonlib.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the (sortKey, id) position of the last row of a page into an opaque continuation token.
+ */
+public interface CursorHelper {
+
+    int MAX_PAGE_SIZE = 1000;
+
+    static String encode(String sortBy, Object sortKey, Integer id) {
+        String raw = sortBy + "|" + sortKey + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Cursor decode(String cursor, String sortBy) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3 || !parts[0].equals(sortBy)) {
+                throw new IllegalStateException("Cursor does not match sort " + sortBy);
+            }
+            return new Cursor(parts[1], Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid cursor", e);
+        }
+    }
+
+    static int limit(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    record Cursor(String sortKey, Integer id) {
+    }
+}
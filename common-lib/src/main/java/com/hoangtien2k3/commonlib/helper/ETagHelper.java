@@ -0,0 +1,57 @@
+package com.hoangtien2k3.commonlib.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Mono;
+
+public interface ETagHelper {
+
+    // weak: the version parts are row timestamps (microsecond precision), while the body also carries
+    // enrichment from other services that can change without them, so equal tags are not byte-equal
+    static String of(Object... versionParts) {
+        String version = Arrays.stream(versionParts).map(String::valueOf).collect(Collectors.joining("|"));
+        return "W/\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // If-None-Match uses the weak comparison, so W/ prefixes are ignored on both sides
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        String opaqueTag = stripWeak(eTag);
+        return Arrays.stream(ifNoneMatch.split(","))
+            .map(String::trim)
+            .map(ETagHelper::stripWeak)
+            .anyMatch(candidate -> candidate.equals("*") || candidate.equals(opaqueTag));
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Answers 304 from the version lookup alone when the client copy is current, otherwise loads
+     * (and enriches) the body. Resources without a known version are always served in full.
+     * The status is passed as an int, the only overload shared by the Spring 5 and 6 services.
+     */
+    static <T> Mono<ResponseEntity<T>> conditional(Mono<String> eTag, String ifNoneMatch, Supplier<Mono<T>> body) {
+        return eTag.map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .flatMap(current -> {
+                if (current.isPresent() && matches(ifNoneMatch, current.get())) {
+                    return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED.value()).eTag(current.get()).<T>build());
+                }
+                return body.get().map(value -> {
+                    ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+                    current.ifPresent(builder::eTag);
+                    return builder.body(value);
+                });
+            });
+    }
+}
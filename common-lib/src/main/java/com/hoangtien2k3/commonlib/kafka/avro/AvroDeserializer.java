@@ -0,0 +1,43 @@
+package com.hoangtien2k3.commonlib.kafka.avro;
+
+import java.io.IOException;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.SchemaStore;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Kafka deserializer for generated Avro classes written with the single-object encoding.
+ * Messages written with an older schema version are resolved through the {@link SchemaStore};
+ * a bad header or an unknown schema fingerprint is reported as a {@link SerializationException}.
+ *
+ * @param <T> The generated event class.
+ */
+public class AvroDeserializer<T extends SpecificRecord> implements Deserializer<T> {
+
+    private final BinaryMessageDecoder<T> decoder;
+
+    public AvroDeserializer(Class<T> type) {
+        this(type, FileSchemaStore.shared());
+    }
+
+    public AvroDeserializer(Class<T> type, SchemaStore schemaStore) {
+        SpecificData specificData = SpecificData.getForClass(type);
+        this.decoder = new BinaryMessageDecoder<>(specificData, specificData.getSchema(type), schemaStore);
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return decoder.decode(data);
+        } catch (IOException | AvroRuntimeException e) {
+            throw new SerializationException("Failed to decode Avro message from topic " + topic, e);
+        }
+    }
+}
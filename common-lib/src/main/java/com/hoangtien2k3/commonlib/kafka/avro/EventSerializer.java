@@ -0,0 +1,46 @@
+package com.hoangtien2k3.commonlib.kafka.avro;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.Schema;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+/**
+ * Kafka serializer for event values.
+ * Generated Avro classes are written with the single-object encoding (schema fingerprint followed
+ * by the binary record); any other value is written as plain JSON, so topics can move to the
+ * binary format one at a time.
+ */
+public class EventSerializer implements Serializer<Object> {
+
+    private final Map<Schema, BinaryMessageEncoder<SpecificRecord>> encoders = new ConcurrentHashMap<>();
+    private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>().noTypeInfo();
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (!(data instanceof SpecificRecord specificRecord)) {
+            return jsonSerializer.serialize(topic, data);
+        }
+        BinaryMessageEncoder<SpecificRecord> encoder = encoders.computeIfAbsent(specificRecord.getSchema(),
+            schema -> new BinaryMessageEncoder<>(SpecificData.getForSchema(schema), schema));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            encoder.encode(specificRecord, out);
+        } catch (IOException e) {
+            throw new SerializationException("Failed to encode Avro message for topic " + topic, e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        jsonSerializer.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.hoangtien2k3.commonlib.kafka.avro;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import org.apache.avro.Schema;
+import org.apache.avro.message.SchemaStore;
+
+/**
+ * Local stand-in for a schema registry.
+ * Resolves the writer schema of a single-object encoded message by its fingerprint. The schema of
+ * the generated class being read is always known to the decoder, so this store only has to hold
+ * older versions, kept as {@code .avsc} files in the directory given by {@link #SCHEMA_DIR_PROPERTY}.
+ */
+public class FileSchemaStore implements SchemaStore {
+
+    public static final String SCHEMA_DIR_PROPERTY = "kafka.avro.schema-dir";
+    public static final String SCHEMA_DIR_ENV = "KAFKA_AVRO_SCHEMA_DIR";
+
+    private static volatile FileSchemaStore shared;
+
+    private final SchemaStore.Cache cache = new SchemaStore.Cache();
+
+    public FileSchemaStore(Path directory) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".avsc"))
+                .forEach(this::addSchema);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read Avro schemas from " + directory, e);
+        }
+    }
+
+    /**
+     * Store shared by the serializers of a service, read once from the configured directory.
+     *
+     * @return the shared {@link FileSchemaStore}.
+     */
+    public static FileSchemaStore shared() {
+        if (shared == null) {
+            synchronized (FileSchemaStore.class) {
+                if (shared == null) {
+                    String directory = System.getProperty(SCHEMA_DIR_PROPERTY, System.getenv(SCHEMA_DIR_ENV));
+                    shared = new FileSchemaStore(directory == null ? null : Paths.get(directory));
+                }
+            }
+        }
+        return shared;
+    }
+
+    public void addSchema(Schema schema) {
+        cache.addSchema(schema);
+    }
+
+    @Override
+    public Schema findByFingerprint(long fingerprint) {
+        return cache.findByFingerprint(fingerprint);
+    }
+
+    private void addSchema(Path file) {
+        try {
+            // one parser per file, a parser refuses to redefine a named type
+            addSchema(new Schema.Parser().parse(file.toFile()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse Avro schema " + file, e);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.hoangtien2k3.commonlib.kafka.cdc.config;
 
+import com.hoangtien2k3.commonlib.kafka.avro.AvroDeserializer;
 import java.util.Map;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.common.serialization.Deserializer;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
@@ -48,11 +51,22 @@ public abstract class BaseKafkaListenerConfig<K, V> {
     private ConsumerFactory<K, V> typeConsumerFactory(Class<K> keyClazz, Class<V> valueClazz) {
         Map<String, Object> props = buildConsumerProperties();
         // wrapper in case serialization/deserialization occur
-        var keyDeserialize = new ErrorHandlingDeserializer<>(gettJsonDeserializer(keyClazz));
-        var valueDeserialize = new ErrorHandlingDeserializer<>(gettJsonDeserializer(valueClazz));
+        var keyDeserialize = new ErrorHandlingDeserializer<>(getDeserializer(keyClazz));
+        var valueDeserialize = new ErrorHandlingDeserializer<>(getDeserializer(valueClazz));
         return new DefaultKafkaConsumerFactory<>(props, keyDeserialize, valueDeserialize);
     }
 
+    /**
+     * Generated Avro classes are read with {@link AvroDeserializer}, any other type as JSON.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Deserializer<T> getDeserializer(Class<T> clazz) {
+        if (SpecificRecord.class.isAssignableFrom(clazz)) {
+            return (Deserializer<T>) new AvroDeserializer(clazz);
+        }
+        return gettJsonDeserializer(clazz);
+    }
+
     private static <T> JsonDeserializer<T> gettJsonDeserializer(Class<T> clazz) {
         var jsonDeserializer = new JsonDeserializer<>(clazz);
         jsonDeserializer.addTrustedPackages("*");
@@ -0,0 +1,130 @@
+package com.hoangtien2k3.commonlib.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import java.time.Duration;
+import java.util.Date;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Verifies the access tokens signed by user-service.
+ * The parser and its key are built once, and verified claims are cached until the token expires,
+ * so a token is decoded and its signature checked once instead of at every call site. Within a web
+ * request the claims are also kept as a request attribute, see {@link #verifyForRequest(String)}.
+ * Cached claims are shared between callers and must not be modified.
+ */
+public class JwtVerifier {
+
+    public static final String CLAIMS_ATTRIBUTE = JwtVerifier.class.getName() + ".CLAIMS";
+
+    public static final long DEFAULT_CACHE_SIZE = 10_000;
+    public static final Duration DEFAULT_MAX_TTL = Duration.ofMinutes(15);
+
+    private final JwtParser parser;
+
+    // keyed by the token itself rather than a digest, a collision must never hand out another user's claims
+    private final Cache<String, Claims> claimsCache;
+
+    public JwtVerifier(String base64Secret) {
+        this(base64Secret, DEFAULT_CACHE_SIZE, DEFAULT_MAX_TTL);
+    }
+
+    public JwtVerifier(String base64Secret, long cacheSize, Duration maxTtl) {
+        this.parser = Jwts.parserBuilder()
+            .setSigningKey(base64Secret)
+            .build();
+        this.claimsCache = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfter(new ClaimsExpiry(maxTtl))
+            .build();
+    }
+
+    /**
+     * Verifies the signature and expiry of a token, or returns its cached claims.
+     *
+     * @param token the compact JWS, without the {@code Bearer} prefix.
+     * @return the verified claims.
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or has expired.
+     * @throws IllegalArgumentException if the token is empty.
+     */
+    public Claims verify(String token) {
+        Claims claims = claimsCache.getIfPresent(token);
+        if (claims != null) {
+            // the cache evicts lazily, an entry may outlive its token by a moment
+            if (isExpired(claims)) {
+                claimsCache.invalidate(token);
+                throw new ExpiredJwtException(null, claims, "JWT expired at " + claims.getExpiration());
+            }
+            return claims;
+        }
+        claims = parser.parseClaimsJws(token).getBody();
+        claimsCache.put(token, claims);
+        return claims;
+    }
+
+    /**
+     * Same as {@link #verify(String)}, but verifies at most once per web request. The claims are
+     * stored under {@link #CLAIMS_ATTRIBUTE}, so the security filter, token utilities and
+     * controllers handling one request share a single verification.
+     *
+     * @param token the compact JWS, without the {@code Bearer} prefix.
+     * @return the verified claims.
+     */
+    public Claims verifyForRequest(String token) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return verify(token);
+        }
+        Object verified = attributes.getAttribute(CLAIMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (verified instanceof VerifiedToken verifiedToken && verifiedToken.token().equals(token)) {
+            return verifiedToken.claims();
+        }
+        Claims claims = verify(token);
+        attributes.setAttribute(CLAIMS_ATTRIBUTE, new VerifiedToken(token, claims), RequestAttributes.SCOPE_REQUEST);
+        return claims;
+    }
+
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
+
+    private record VerifiedToken(String token, Claims claims) {
+    }
+
+    // keeps an entry until its token expires, capped so tokens without expiry do not stay forever
+    private static final class ClaimsExpiry implements Expiry<String, Claims> {
+
+        private final long maxTtlNanos;
+
+        private ClaimsExpiry(Duration maxTtl) {
+            this.maxTtlNanos = maxTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return maxTtlNanos;
+            }
+            long untilExpiry = Duration.ofMillis(expiration.getTime() - System.currentTimeMillis()).toNanos();
+            return Math.max(0, Math.min(untilExpiry, maxTtlNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.hoangtien2k3.commonlib.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import java.security.Key;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Issues the access tokens a service uses for its own calls to other services, e.g. from background
+ * jobs that outlive the request that started them. The tokens are signed with the secret shared with
+ * user-service, carry only the {@link #SERVICE_AUTHORITY} authority and are short-lived; one token is
+ * reused until half of its lifetime has passed. A user logging out never revokes them.
+ */
+public class ServiceTokenIssuer {
+
+    public static final String SERVICE_AUTHORITY = "SERVICE";
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private final Key signingKey;
+    private final String serviceName;
+    private final Duration ttl;
+
+    private volatile IssuedToken current;
+
+    public ServiceTokenIssuer(String base64Secret, String serviceName) {
+        this(base64Secret, serviceName, DEFAULT_TTL);
+    }
+
+    public ServiceTokenIssuer(String base64Secret, String serviceName, Duration ttl) {
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
+        this.serviceName = serviceName;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns a token that stays valid for at least half of the configured lifetime.
+     *
+     * @return the compact JWS, without the {@code Bearer} prefix.
+     */
+    public String token() {
+        IssuedToken token = current;
+        long now = System.currentTimeMillis();
+        if (token == null || token.renewAt() <= now) {
+            token = issue(now);
+            current = token;
+        }
+        return token.value();
+    }
+
+    private IssuedToken issue(long now) {
+        String value = Jwts.builder()
+            .setId(UUID.randomUUID().toString())
+            .setSubject(serviceName)
+            .claim("authorities", List.of(SERVICE_AUTHORITY))
+            .setIssuedAt(new Date(now))
+            .setExpiration(new Date(now + ttl.toMillis()))
+            .signWith(signingKey)
+            .compact();
+        return new IssuedToken(value, now + ttl.toMillis() / 2);
+    }
+
+    private record IssuedToken(String value, long renewAt) {
+    }
+}
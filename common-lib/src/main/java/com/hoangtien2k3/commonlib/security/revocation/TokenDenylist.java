@@ -0,0 +1,85 @@
+package com.hoangtien2k3.commonlib.security.revocation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory denylist of revoked access tokens, keyed by their {@code jti}.
+ * An entry lives until the token's own expiry, after which the signature check rejects the token
+ * anyway. Lookups go through a {@link BloomFilter} first, so the common case of a token that was
+ * never revoked is answered without touching the map. Lookups are lock free; revocations are rare
+ * and serialized, which also keeps the filter a superset of the map while it is being rebuilt.
+ */
+public class TokenDenylist {
+
+    public static final int DEFAULT_EXPECTED_REVOCATIONS = 100_000;
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long PURGE_INTERVAL_MILLIS = 60_000;
+
+    private final int expectedRevocations;
+    private final Map<String, Long> expiresAtByJti = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+    private int filterCapacity;
+    private long nextPurgeAt;
+
+    public TokenDenylist() {
+        this(DEFAULT_EXPECTED_REVOCATIONS);
+    }
+
+    public TokenDenylist(int expectedRevocations) {
+        this.expectedRevocations = expectedRevocations;
+        this.filterCapacity = expectedRevocations;
+        this.filter = new BloomFilter(expectedRevocations, FALSE_POSITIVE_RATE);
+        this.nextPurgeAt = System.currentTimeMillis() + PURGE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Checks whether a token was revoked.
+     *
+     * @param jti the token id, tokens without one cannot be revoked.
+     * @return true while the revoked token has not expired.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = expiresAtByJti.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Revokes a token until its expiry. Revoking the same token again is a no-op, so replayed
+     * revocation events are harmless.
+     *
+     * @param jti             the token id.
+     * @param expiresAtMillis the token expiry in epoch milliseconds.
+     */
+    public synchronized void revoke(String jti, long expiresAtMillis) {
+        long now = System.currentTimeMillis();
+        if (jti == null || expiresAtMillis <= now) {
+            return;
+        }
+        expiresAtByJti.merge(jti, expiresAtMillis, Math::max);
+        filter.put(jti);
+        if (now >= nextPurgeAt || expiresAtByJti.size() > filterCapacity) {
+            purge(now);
+        }
+    }
+
+    public int size() {
+        return expiresAtByJti.size();
+    }
+
+    // a Bloom filter cannot forget, so it is rebuilt from the live entries once expired ones are dropped
+    private void purge(long now) {
+        expiresAtByJti.values().removeIf(expiresAt -> expiresAt <= now);
+        int capacity = Math.max(expectedRevocations, expiresAtByJti.size() * 2);
+        BloomFilter rebuilt = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+        expiresAtByJti.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+        filterCapacity = capacity;
+        nextPurgeAt = now + PURGE_INTERVAL_MILLIS;
+    }
+}
@@ -0,0 +1,156 @@
+package com.hoangtien2k3.commonlib.security.revocation;
+
+import com.hoangtien2k3.commonlib.kafka.avro.AvroDeserializer;
+import com.hoangtien2k3.commonlib.kafka.event.TokenRevokedEvent;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Replicates token revocations from Kafka into the local {@link TokenDenylist}.
+ * Every instance assigns itself all partitions of the topic without a consumer group, so nothing is
+ * left behind on the brokers when it stops, and starts reading at the revocations published within the
+ * last access token lifetime; older revocations only concern tokens that have already expired.
+ */
+@Slf4j
+public class TokenRevocationListener implements SmartLifecycle {
+
+    public static final String TOPIC = "tokenRevoked";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+    private static final long RETRY_BACKOFF_MILLIS = 5_000;
+
+    private final Map<String, Object> consumerProperties;
+    private final Duration maxTokenTtl;
+    private final TokenDenylist tokenDenylist;
+    private final AvroDeserializer<TokenRevokedEvent> deserializer = new AvroDeserializer<>(TokenRevokedEvent.class);
+
+    private volatile boolean running;
+    private volatile KafkaConsumer<String, byte[]> consumer;
+    private Thread thread;
+
+    public TokenRevocationListener(String bootstrapServers, String serviceName, Duration maxTokenTtl,
+                                   TokenDenylist tokenDenylist) {
+        this.consumerProperties = Map.of(
+            ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+            ConsumerConfig.CLIENT_ID_CONFIG, serviceName + "-token-revocation",
+            ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false,
+            ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+            ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        this.maxTokenTtl = maxTokenTtl;
+        this.tokenDenylist = tokenDenylist;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::run, "token-revocation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        KafkaConsumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(POLL_TIMEOUT.toMillis() * 5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            try (KafkaConsumer<String, byte[]> kafkaConsumer = new KafkaConsumer<>(consumerProperties)) {
+                consumer = kafkaConsumer;
+                if (!assignFromMaxTokenTtl(kafkaConsumer)) {
+                    log.warn("Token revocation topic {} has no partitions yet, retrying", TOPIC);
+                    sleepBeforeRetry();
+                    continue;
+                }
+                while (running) {
+                    kafkaConsumer.poll(POLL_TIMEOUT).forEach(this::apply);
+                }
+            } catch (WakeupException e) {
+                // stop() was called
+            } catch (Exception e) {
+                log.error("Token revocation listener failed, retrying: {}", e.getMessage());
+                sleepBeforeRetry();
+            } finally {
+                consumer = null;
+            }
+        }
+    }
+
+    // seeks every partition to the first revocation of a token that may still be valid,
+    // or to its end when the partition holds none
+    private boolean assignFromMaxTokenTtl(KafkaConsumer<String, byte[]> kafkaConsumer) {
+        List<PartitionInfo> partitionInfos = kafkaConsumer.partitionsFor(TOPIC);
+        if (partitionInfos == null || partitionInfos.isEmpty()) {
+            return false;
+        }
+        List<TopicPartition> partitions = partitionInfos.stream()
+            .map(info -> new TopicPartition(info.topic(), info.partition()))
+            .toList();
+        kafkaConsumer.assign(partitions);
+
+        long since = System.currentTimeMillis() - maxTokenTtl.toMillis();
+        Map<TopicPartition, OffsetAndTimestamp> offsets = kafkaConsumer.offsetsForTimes(
+            partitions.stream().collect(Collectors.toMap(Function.identity(), partition -> since)));
+        partitions.forEach(partition -> {
+            OffsetAndTimestamp offset = offsets.get(partition);
+            if (offset == null) {
+                kafkaConsumer.seekToEnd(List.of(partition));
+            } else {
+                kafkaConsumer.seek(partition, offset.offset());
+            }
+        });
+        return true;
+    }
+
+    private void apply(ConsumerRecord<String, byte[]> record) {
+        try {
+            TokenRevokedEvent event = deserializer.deserialize(record.topic(), record.value());
+            if (event != null) {
+                tokenDenylist.revoke(event.getJti(), event.getExpiresAt());
+            }
+        } catch (SerializationException e) {
+            log.error("Skipping unreadable token revocation at offset {}: {}", record.offset(), e.getMessage());
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.hoangtien2k3.commonlib.viewmodel.collection;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Collection;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CursorPageResponse<T> {
+
+    private Collection<T> collection;
+
+    // opaque token for the next page, null on the last page
+    private String nextCursor;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+
+}
@@ -0,0 +1,119 @@
+package com.hoangtien2k3.commonlib.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnrichmentExecutorTest {
+
+    private static final String DOWNSTREAM = "user-service";
+
+    private SimpleMeterRegistry meterRegistry;
+    private FanOutProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new FanOutProperties();
+        properties.setMinLimit(1);
+        // keeps scheduling jitter from counting as congestion
+        properties.setLatencyTolerance(10.0);
+    }
+
+    @Test
+    void testCall_withFastCallsUsingTheLimit_shouldIncreaseConcurrency() {
+        // Given
+        properties.setInitialLimit(3);
+        EnrichmentExecutor executor = new EnrichmentExecutor(properties, meterRegistry);
+        Instant deadline = Instant.now().plusSeconds(10);
+
+        // When
+        // one slot of headroom: flatMap starts the next call before the finished one has released its slot
+        Flux.range(0, 40)
+                .flatMap(i -> executor.call(DOWNSTREAM, () -> Mono.delay(Duration.ofMillis(10)).thenReturn(i), deadline), 2)
+                .blockLast();
+
+        // Then
+        assertTrue(executor.concurrency(DOWNSTREAM) > 3);
+    }
+
+    @Test
+    void testCall_withServerError_shouldDecreaseConcurrency() {
+        // Given
+        properties.setInitialLimit(10);
+        EnrichmentExecutor executor = new EnrichmentExecutor(properties, meterRegistry);
+        WebClientResponseException serverError = WebClientResponseException.create(503, "Service Unavailable",
+                HttpHeaders.EMPTY, new byte[0], null);
+
+        // When
+        Mono<Object> call = executor.call(DOWNSTREAM, () -> Mono.error(serverError), Instant.now().plusSeconds(10));
+
+        // Then
+        assertThrows(WebClientResponseException.class, call::block);
+        assertEquals(9, executor.concurrency(DOWNSTREAM));
+    }
+
+    @Test
+    void testCall_withTimeout_shouldDecreaseConcurrencyAndCountTimeout() {
+        // Given
+        properties.setInitialLimit(10);
+        properties.setCallTimeout(Duration.ofMillis(50));
+        EnrichmentExecutor executor = new EnrichmentExecutor(properties, meterRegistry);
+
+        // When
+        Mono<Object> call = executor.call(DOWNSTREAM, Mono::never, Instant.now().plusSeconds(10));
+
+        // Then
+        Exception exception = assertThrows(Exception.class, call::block);
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+        assertEquals(9, executor.concurrency(DOWNSTREAM));
+        assertEquals(1.0, meterRegistry.get("enrichment.limiter.timeouts").counter().count());
+    }
+
+    @Test
+    void testCall_withClientError_shouldKeepConcurrency() {
+        // Given
+        properties.setInitialLimit(10);
+        EnrichmentExecutor executor = new EnrichmentExecutor(properties, meterRegistry);
+        WebClientResponseException notFound = WebClientResponseException.create(404, "Not Found",
+                HttpHeaders.EMPTY, new byte[0], null);
+
+        // When
+        Mono<Object> call = executor.call(DOWNSTREAM, () -> Mono.error(notFound), Instant.now().plusSeconds(10));
+
+        // Then
+        assertThrows(WebClientResponseException.class, call::block);
+        assertEquals(10, executor.concurrency(DOWNSTREAM));
+    }
+
+    @Test
+    void testCall_withLimitReached_shouldShedInsteadOfQueueing() {
+        // Given
+        properties.setInitialLimit(1);
+        EnrichmentExecutor executor = new EnrichmentExecutor(properties, meterRegistry);
+        Instant deadline = Instant.now().plusSeconds(10);
+        Disposable inFlight = executor.call(DOWNSTREAM, Mono::never, deadline).subscribe();
+
+        try {
+            // When
+            Mono<Object> call = executor.call(DOWNSTREAM, () -> Mono.just("user"), deadline);
+
+            // Then
+            assertThrows(RejectedExecutionException.class, call::block);
+            assertEquals(1.0, meterRegistry.get("enrichment.limiter.shed").counter().count());
+        } finally {
+            inFlight.dispose();
+        }
+    }
+}
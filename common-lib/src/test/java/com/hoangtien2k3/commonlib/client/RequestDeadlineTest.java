@@ -0,0 +1,41 @@
+package com.hoangtien2k3.commonlib.client;
+
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestDeadlineTest {
+
+    @Test
+    void testResolve_withTimeoutHeader_shouldAddItToReceivedAt() {
+        // Given
+        Instant receivedAt = Instant.parse("2024-01-01T00:00:00Z");
+
+        // When
+        Instant deadline = RequestDeadline.resolve("1500", receivedAt);
+
+        // Then
+        assertEquals(receivedAt.plusMillis(1500), deadline);
+    }
+
+    @Test
+    void testResolve_withMissingOrMalformedHeader_shouldReturnNull() {
+        // Given
+        Instant receivedAt = Instant.now();
+
+        // When & Then
+        assertNull(RequestDeadline.resolve(null, receivedAt));
+        assertNull(RequestDeadline.resolve(" ", receivedAt));
+        assertNull(RequestDeadline.resolve("soon", receivedAt));
+    }
+
+    @Test
+    void testRemaining_withPassedDeadline_shouldNotBeNegative() {
+        // When
+        String remaining = RequestDeadline.remaining(Instant.now().minusSeconds(1));
+
+        // Then
+        assertEquals("0", remaining);
+    }
+}
@@ -0,0 +1,57 @@
+package com.hoangtien2k3.commonlib.kafka.avro;
+
+import com.hoangtien2k3.commonlib.kafka.event.PaymentEvent;
+import com.hoangtien2k3.commonlib.kafka.event.PaymentStatus;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSerializerTest {
+
+    private static final String TOPIC = "SUCCESSFUL";
+
+    private final EventSerializer eventSerializer = new EventSerializer();
+
+    private final AvroDeserializer<PaymentEvent> paymentEventDeserializer =
+        new AvroDeserializer<>(PaymentEvent.class, new FileSchemaStore(null));
+
+    @Test
+    void testSerialize_withAvroEvent_shouldRoundTrip() {
+        // Given
+        PaymentEvent paymentEvent = PaymentEvent.newBuilder()
+            .setPaymentId(1)
+            .setIsPayed(true)
+            .setPaymentStatus(PaymentStatus.COMPLETED)
+            .setOrderId(2)
+            .setUserId(3L)
+            .build();
+
+        // When
+        byte[] bytes = eventSerializer.serialize(TOPIC, paymentEvent);
+        PaymentEvent decoded = paymentEventDeserializer.deserialize(TOPIC, bytes);
+
+        // Then
+        assertEquals(paymentEvent, decoded);
+    }
+
+    @Test
+    void testSerialize_withPlainObject_shouldWriteJson() {
+        // When
+        byte[] bytes = eventSerializer.serialize(TOPIC, Map.of("orderId", 2));
+
+        // Then
+        assertEquals("{\"orderId\":2}", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDeserialize_withJsonPayload_shouldThrowSerializationException() {
+        // Given
+        byte[] json = "{\"orderId\":2}".getBytes(StandardCharsets.UTF_8);
+
+        // When & Then
+        assertThrows(SerializationException.class, () -> paymentEventDeserializer.deserialize(TOPIC, json));
+    }
+}
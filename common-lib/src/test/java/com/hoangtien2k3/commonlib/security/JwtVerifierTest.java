@@ -0,0 +1,99 @@
+package com.hoangtien2k3.commonlib.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtVerifierTest {
+
+    private static final String SECRET = Encoders.BASE64.encode(filled(64, (byte) 7));
+    private static final String OTHER_SECRET = Encoders.BASE64.encode(filled(64, (byte) 9));
+
+    private final JwtVerifier jwtVerifier = new JwtVerifier(SECRET);
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testVerify_withValidToken_shouldReturnCachedClaims() {
+        // Given
+        String token = token(SECRET, "alice", 60_000);
+
+        // When
+        Claims first = jwtVerifier.verify(token);
+        Claims second = jwtVerifier.verify(token);
+
+        // Then
+        assertEquals("alice", first.getSubject());
+        assertEquals(List.of("USER"), first.get("authorities", List.class));
+        assertSame(first, second);
+    }
+
+    @Test
+    void testVerify_withForeignSignature_shouldThrowJwtException() {
+        // Given
+        String token = token(OTHER_SECRET, "alice", 60_000);
+
+        // When & Then
+        assertThrows(JwtException.class, () -> jwtVerifier.verify(token));
+    }
+
+    @Test
+    void testVerify_withExpiredToken_shouldThrowExpiredJwtException() {
+        // Given
+        String token = token(SECRET, "alice", -1_000);
+
+        // When & Then
+        assertThrows(ExpiredJwtException.class, () -> jwtVerifier.verify(token));
+    }
+
+    @Test
+    void testVerifyForRequest_shouldStoreClaimsAsRequestAttribute() {
+        // Given
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        String token = token(SECRET, "alice", 60_000);
+
+        // When
+        Claims claims = jwtVerifier.verifyForRequest(token);
+
+        // Then
+        assertNotNull(RequestContextHolder.currentRequestAttributes()
+            .getAttribute(JwtVerifier.CLAIMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+        assertSame(claims, jwtVerifier.verifyForRequest(token));
+    }
+
+    private static String token(String secret, String username, long expiresInMillis) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+            .setSubject(username)
+            .claim("authorities", List.of("USER"))
+            .setIssuedAt(new Date(now))
+            .setExpiration(new Date(now + expiresInMillis))
+            .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)), SignatureAlgorithm.HS512)
+            .compact();
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
@@ -0,0 +1,62 @@
+package com.hoangtien2k3.commonlib.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.io.Encoders;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceTokenIssuerTest {
+
+    private static final String SECRET = Encoders.BASE64.encode(filled(64, (byte) 7));
+
+    @Test
+    void testToken_shouldBeVerifiedWithTheSharedSecret() {
+        // Given
+        ServiceTokenIssuer issuer = new ServiceTokenIssuer(SECRET, "payment-service");
+
+        // When
+        Claims claims = new JwtVerifier(SECRET).verify(issuer.token());
+
+        // Then
+        assertEquals("payment-service", claims.getSubject());
+        assertEquals(List.of(ServiceTokenIssuer.SERVICE_AUTHORITY), claims.get("authorities"));
+        assertNotNull(claims.getId());
+        assertNotNull(claims.getExpiration());
+    }
+
+    @Test
+    void testToken_withinHalfItsLifetime_shouldBeReused() {
+        // Given
+        ServiceTokenIssuer issuer = new ServiceTokenIssuer(SECRET, "payment-service", Duration.ofMinutes(5));
+
+        // When
+        String first = issuer.token();
+        String second = issuer.token();
+
+        // Then
+        assertSame(first, second);
+    }
+
+    @Test
+    void testToken_pastHalfItsLifetime_shouldBeReissued() {
+        // Given
+        ServiceTokenIssuer issuer = new ServiceTokenIssuer(SECRET, "payment-service", Duration.ZERO);
+
+        // When
+        String first = issuer.token();
+        String second = issuer.token();
+
+        // Then
+        assertNotEquals(first, second);
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
@@ -0,0 +1,59 @@
+package com.hoangtien2k3.commonlib.security.revocation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenDenylistTest {
+
+    private static final long IN_ONE_HOUR = 3_600_000;
+
+    @Test
+    void testIsRevoked_withRevokedToken_shouldReturnTrue() {
+        // Given
+        TokenDenylist tokenDenylist = new TokenDenylist();
+        String jti = UUID.randomUUID().toString();
+
+        // When
+        tokenDenylist.revoke(jti, System.currentTimeMillis() + IN_ONE_HOUR);
+
+        // Then
+        assertTrue(tokenDenylist.isRevoked(jti));
+        assertFalse(tokenDenylist.isRevoked(UUID.randomUUID().toString()));
+        assertFalse(tokenDenylist.isRevoked(null));
+    }
+
+    @Test
+    void testRevoke_withExpiredToken_shouldNotKeepIt() {
+        // Given
+        TokenDenylist tokenDenylist = new TokenDenylist();
+        String jti = UUID.randomUUID().toString();
+
+        // When
+        tokenDenylist.revoke(jti, System.currentTimeMillis() - 1);
+
+        // Then
+        assertFalse(tokenDenylist.isRevoked(jti));
+        assertEquals(0, tokenDenylist.size());
+    }
+
+    @Test
+    void testRevoke_beyondExpectedRevocations_shouldKeepEveryToken() {
+        // Given
+        TokenDenylist tokenDenylist = new TokenDenylist(100);
+        List<String> jtis = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            jtis.add(UUID.randomUUID().toString());
+        }
+
+        // When
+        jtis.forEach(jti -> tokenDenylist.revoke(jti, System.currentTimeMillis() + IN_ONE_HOUR));
+
+        // Then
+        assertTrue(jtis.stream().allMatch(tokenDenylist::isRevoked));
+        assertEquals(1_000, tokenDenylist.size());
+    }
+}
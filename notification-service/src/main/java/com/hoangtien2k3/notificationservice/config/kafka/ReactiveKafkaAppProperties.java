@@ -10,4 +10,13 @@ public class ReactiveKafkaAppProperties {
 
     @Value("${payment.kafka.consumer-group-id}")
     String consumerGroupId;
+
+    @Value("${kafka.producer.linger-ms:20}")
+    int lingerMs;
+
+    @Value("${kafka.producer.batch-size:65536}")
+    int batchSize;
+
+    @Value("${kafka.producer.compression-type:lz4}")
+    String compressionType;
 }
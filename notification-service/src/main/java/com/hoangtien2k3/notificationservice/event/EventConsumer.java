@@ -1,6 +1,8 @@
 package com.hoangtien2k3.notificationservice.event;
 
-import com.google.gson.Gson;
+import com.hoangtien2k3.commonlib.kafka.avro.AvroDeserializer;
+import com.hoangtien2k3.commonlib.kafka.event.EmailEvent;
+import com.hoangtien2k3.commonlib.kafka.event.PaymentEvent;
 import com.hoangtien2k3.notificationservice.constant.KafkaConstant;
 import com.hoangtien2k3.notificationservice.dto.EmailDetails;
 import com.hoangtien2k3.notificationservice.dto.PaymentDto;
@@ -26,7 +28,8 @@ import java.util.function.Consumer;
 @Slf4j
 public class EventConsumer {
 
-    Gson gson = new Gson(); // convert Json -> DTO
+    private final AvroDeserializer<EmailEvent> emailEventDeserializer = new AvroDeserializer<>(EmailEvent.class);
+    private final AvroDeserializer<PaymentEvent> paymentEventDeserializer = new AvroDeserializer<>(PaymentEvent.class);
 
     @Autowired
     private EmailService emailService;
@@ -37,34 +40,47 @@ public class EventConsumer {
     @Autowired
     private EventProducer eventProducer;
 
-    public EventConsumer(ReceiverOptions<String, String> receiverOptions) {
+    public EventConsumer(ReceiverOptions<String, byte[]> receiverOptions) {
         subscribeToTopic(receiverOptions, KafkaConstant.PROFILE_ONBOARDING_TOPIC, this::sendEmailKafkaOnboarding);
         subscribeToTopic(receiverOptions, KafkaConstant.STATUS_PAYMENT_SUCCESSFUL, this::paymentOrderKafkaOnboarding);
     }
 
-    private void subscribeToTopic(ReceiverOptions<String, String> receiverOptions, String topic, Consumer<ReceiverRecord<String, String>> handler) {
+    private void subscribeToTopic(ReceiverOptions<String, byte[]> receiverOptions, String topic, Consumer<ReceiverRecord<String, byte[]>> handler) {
         log.info("Subscribed to Kafka topic: {}", topic);
         KafkaReceiver.create(receiverOptions.subscription(Collections.singleton(topic)))
                 .receive()
                 .subscribe(handler);
     }
 
-    public void sendEmailKafkaOnboarding(ReceiverRecord<String, String> receiverRecord) {
+    public void sendEmailKafkaOnboarding(ReceiverRecord<String, byte[]> receiverRecord) {
         log.info("USER-SERVICE Onboarding event send email on notification service.");
-        EmailDetails emailDetails = gson.fromJson(receiverRecord.value(), EmailDetails.class);
+        EmailEvent emailEvent = emailEventDeserializer.deserialize(receiverRecord.topic(), receiverRecord.value());
+        EmailDetails emailDetails = EmailDetails.builder()
+                .recipient(emailEvent.getRecipient())
+                .msgBody(emailEvent.getMsgBody())
+                .subject(emailEvent.getSubject())
+                .attachment(emailEvent.getAttachment())
+                .build();
 
         emailService.sendSimpleMail(emailDetails).subscribe(email -> {
             log.info("send email successfully -> user-service change password.");
-            eventProducer.send(KafkaConstant.PROFILE_ONBOARDED_TOPIC, gson.toJson(email)).subscribe();
+            eventProducer.send(KafkaConstant.PROFILE_ONBOARDED_TOPIC, emailDetails.getRecipient(), email).subscribe();
         });
     }
 
-    public void paymentOrderKafkaOnboarding(ReceiverRecord<String, String> receiverRecord) {
+    public void paymentOrderKafkaOnboarding(ReceiverRecord<String, byte[]> receiverRecord) {
         log.info("Payment Onboarding event send notification-service payment.");
 
-        PaymentDto paymentDto = gson.fromJson(receiverRecord.value(), PaymentDto.class);
+        PaymentEvent paymentEvent = paymentEventDeserializer.deserialize(receiverRecord.topic(), receiverRecord.value());
+        PaymentDto paymentDto = PaymentDto.builder()
+                .paymentId(paymentEvent.getPaymentId())
+                .isPayed(paymentEvent.getIsPayed())
+                .paymentStatus(paymentEvent.getPaymentStatus() == null ? null : PaymentStatus.valueOf(paymentEvent.getPaymentStatus().name()))
+                .orderId(paymentEvent.getOrderId())
+                .userId(paymentEvent.getUserId())
+                .build();
         paymentService.savePayment(paymentDto).subscribe(res -> {
-            eventProducer.send(KafkaConstant.PROFILE_ONBOARDED_TOPIC, gson.toJson(paymentDto)).subscribe();
+            eventProducer.send(KafkaConstant.PROFILE_ONBOARDED_TOPIC, String.valueOf(paymentDto.getOrderId()), paymentDto).subscribe();
         });
 
         EmailDetails emailDetails = EmailDetails.builder()
@@ -74,7 +90,7 @@ public class EventConsumer {
                 .attachment("Please, check the full information in invoice: " + LocalDateTime.now())
                 .build();
         emailService.sendSimpleMail(emailDetails).subscribe(email -> {
-            eventProducer.send(KafkaConstant.PROFILE_ONBOARDED_TOPIC, gson.toJson(email)).subscribe();
+            eventProducer.send(KafkaConstant.PROFILE_ONBOARDED_TOPIC, emailDetails.getRecipient(), email).subscribe();
         });
 
     }
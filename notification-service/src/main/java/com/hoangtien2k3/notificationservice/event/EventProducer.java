@@ -12,11 +12,12 @@ import reactor.kafka.sender.SenderRecord;
 @Slf4j
 public class EventProducer {
     @Autowired
-    private KafkaSender<String, String> sender;
+    private KafkaSender<String, Object> sender;
 
-    public Mono<String> send(String topic, String message){
+    // records with the same key land on the same partition, so events of one entity stay in order
+    public Mono<String> send(String topic, String key, Object event) {
         return sender
-                .send(Mono.just(SenderRecord.create(new ProducerRecord<>(topic,message),message)))
+                .send(Mono.just(SenderRecord.create(new ProducerRecord<>(topic, key, event), key)))
                 .then()
                 .thenReturn("OK");
     }
@@ -1,8 +1,13 @@
 package com.hoangtien2k3.orderservice.api;
 
+import com.hoangtien2k3.commonlib.helper.ETagHelper;
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
 import com.hoangtien2k3.orderservice.dto.order.CartDto;
-import com.hoangtien2k3.orderservice.service.CartService;
+import com.hoangtien2k3.orderservice.dto.order.CartPurgeProgress;
+import com.hoangtien2k3.orderservice.dto.order.CartPurgeRequest;
 import com.hoangtien2k3.orderservice.service.CallAPI;
+import com.hoangtien2k3.orderservice.service.CartPurgeService;
+import com.hoangtien2k3.orderservice.service.CartService;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
@@ -11,6 +16,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -32,6 +38,8 @@ public class CartController {
 
     private final CartService cartService;
 
+    private final CartPurgeService cartPurgeService;
+
     @Autowired
     private CallAPI testCallApi;
 
@@ -65,18 +73,36 @@ public class CartController {
                 .defaultIfEmpty(ResponseEntity.noContent().build());
     }
 
+    @ApiOperation(value = "Get all carts with a cursor", notes = "Retrieve carts after the given cursor using keyset pagination.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Carts retrieved successfully", response = CursorPageResponse.class),
+            @ApiResponse(code = 400, message = "Invalid cursor", response = ResponseEntity.class)
+    })
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER')")
+    public Mono<ResponseEntity<CursorPageResponse<CartDto>>> findAll(@RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "10") int size,
+                                                                    @RequestParam(defaultValue = "false") boolean withTotal) {
+        return cartService.findAll(cursor, size, withTotal)
+                .map(ResponseEntity::ok);
+    }
+
     @ApiOperation(value = "Get cart by ID", notes = "Retrieve cart information based on the provided ID.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Cart retrieved successfully", response = CartDto.class),
+            @ApiResponse(code = 304, message = "Cart not modified since the given ETag", response = ResponseEntity.class),
             @ApiResponse(code = 404, message = "Cart not found", response = ResponseEntity.class)
     })
     @GetMapping("/{cartId}")
     @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
-    public ResponseEntity<Mono<CartDto>> findById(@PathVariable("cartId")
+    public Mono<ResponseEntity<CartDto>> findById(@PathVariable("cartId")
                                                   @NotBlank(message = "Input must not be blank")
-                                                  @Valid final String cartId) {
+                                                  @Valid final String cartId,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                  final String ifNoneMatch) {
         log.info("*** CartDto, resource; fetch cart by id *");
-        return ResponseEntity.ok(this.cartService.findById(Integer.parseInt(cartId)));
+        Integer id = Integer.parseInt(cartId);
+        return ETagHelper.conditional(this.cartService.findETag(id), ifNoneMatch, () -> this.cartService.findById(id));
     }
 
 
@@ -96,6 +122,22 @@ public class CartController {
                 .defaultIfEmpty(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
     }
 
+    @ApiOperation(value = "Checkout cart", notes = "Save a new cart together with all of its order lines in one transaction.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Cart checked out successfully", response = CartDto.class),
+            @ApiResponse(code = 400, message = "Cart has no order lines", response = ResponseEntity.class)
+    })
+    @PostMapping("/checkout")
+    @PreAuthorize("hasAuthority('USER')")
+    public Mono<ResponseEntity<CartDto>> checkout(@RequestBody
+                                                  @NotNull(message = "Input must not be NULL!")
+                                                  @Valid final CartDto cartDto) {
+        log.info("*** CartDto, resource; checkout cart *");
+        return cartService.checkout(cartDto)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
     @ApiOperation(value = "Update cart", notes = "Update an existing cart.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Cart updated successfully", response = CartDto.class),
@@ -145,4 +187,32 @@ public class CartController {
                 .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).body(false));
     }
 
+    @ApiOperation(value = "Purge carts", notes = "Start a background purge of carts and their orders, by id list or by age.")
+    @ApiResponses({
+            @ApiResponse(code = 202, message = "Cart purge started", response = CartPurgeProgress.class),
+            @ApiResponse(code = 400, message = "Invalid purge request or a purge is already running", response = ResponseEntity.class)
+    })
+    @PostMapping("/purge")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<CartPurgeProgress>> purge(@RequestBody
+                                                         @NotNull(message = "Input must not be NULL")
+                                                         @Valid final CartPurgeRequest cartPurgeRequest) {
+        log.info("*** CartPurgeProgress, resource; start cart purge *");
+        return cartPurgeService.start(cartPurgeRequest)
+                .map(progress -> ResponseEntity.status(HttpStatus.ACCEPTED).body(progress));
+    }
+
+    @ApiOperation(value = "Get cart purge progress", notes = "Retrieve the progress of a cart purge job.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Cart purge progress retrieved successfully", response = CartPurgeProgress.class),
+            @ApiResponse(code = 404, message = "Cart purge not found", response = ResponseEntity.class)
+    })
+    @GetMapping("/purge/{jobId}")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<CartPurgeProgress>> findPurgeByJobId(@PathVariable("jobId") final String jobId) {
+        log.info("*** CartPurgeProgress, resource; fetch cart purge progress *");
+        return cartPurgeService.findByJobId(jobId)
+                .map(ResponseEntity::ok);
+    }
+
 }
@@ -0,0 +1,74 @@
+package com.hoangtien2k3.orderservice.api;
+
+import com.hoangtien2k3.orderservice.dto.order.OrderAggregateDto;
+import com.hoangtien2k3.orderservice.entity.OrderRollup;
+import com.hoangtien2k3.orderservice.service.OrderAggregateService;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/orders/aggregates")
+@Tag(name = "OrderAggregateController", description = "Order count and fee rollups per day, product and user")
+public class OrderAggregateController {
+
+    private final OrderAggregateService orderAggregateService;
+
+    @ApiOperation(value = "Get order aggregates", notes = "Retrieve every rollup of a dimension (day, product or user).")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Order aggregates retrieved successfully", response = List.class),
+            @ApiResponse(code = 400, message = "Unknown dimension", response = ResponseEntity.class)
+    })
+    @GetMapping("/{dimension}")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<List<OrderAggregateDto>>> findAll(@PathVariable("dimension") final String dimension) {
+        log.info("*** OrderAggregateDto List, controller; fetch order aggregates *");
+        return orderAggregateService.findAll(toDimension(dimension))
+                .map(ResponseEntity::ok);
+    }
+
+    @ApiOperation(value = "Get order aggregate by key", notes = "Retrieve the rollup of one day, product or user.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Order aggregate retrieved successfully", response = OrderAggregateDto.class),
+            @ApiResponse(code = 400, message = "Unknown dimension", response = ResponseEntity.class)
+    })
+    @GetMapping("/{dimension}/{key}")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<OrderAggregateDto>> findByKey(@PathVariable("dimension") final String dimension,
+                                                             @PathVariable("key") final String key) {
+        log.info("*** OrderAggregateDto, controller; fetch order aggregate by key *");
+        return orderAggregateService.findByKey(toDimension(dimension), key)
+                .map(ResponseEntity::ok);
+    }
+
+    @ApiOperation(value = "Rebuild order aggregates", notes = "Recompute every rollup from the orders table.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Order aggregates rebuilt, returns the number of rollup rows", response = Integer.class)
+    })
+    @PostMapping("/rebuild")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<Integer>> rebuild() {
+        log.info("*** Integer, controller; rebuild order aggregates *");
+        return orderAggregateService.rebuild()
+                .map(ResponseEntity::ok);
+    }
+
+    private static OrderRollup.Dimension toDimension(String dimension) {
+        return Arrays.stream(OrderRollup.Dimension.values())
+                .filter(value -> value.name().equalsIgnoreCase(dimension))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown aggregate dimension: " + dimension));
+    }
+}
@@ -1,5 +1,8 @@
 package com.hoangtien2k3.orderservice.api;
 
+import com.hoangtien2k3.commonlib.helper.ETagHelper;
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
+import com.hoangtien2k3.orderservice.constrant.ExportFormat;
 import com.hoangtien2k3.orderservice.dto.order.OrderDto;
 import com.hoangtien2k3.orderservice.service.OrderService;
 import io.swagger.annotations.ApiOperation;
@@ -9,10 +12,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
@@ -60,18 +65,84 @@ public class OrderController {
                 .defaultIfEmpty(ResponseEntity.noContent().build());
     }
 
+    @ApiOperation(value = "Get all orders with a cursor", notes = "Retrieve orders after the given cursor using keyset pagination.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Orders retrieved successfully", response = CursorPageResponse.class),
+            @ApiResponse(code = 400, message = "Invalid cursor", response = ResponseEntity.class)
+    })
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER')")
+    public Mono<ResponseEntity<CursorPageResponse<OrderDto>>> findAll(@RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "10") int size,
+                                                                    @RequestParam(defaultValue = "orderId") String sortBy,
+                                                                    @RequestParam(defaultValue = "false") boolean withTotal) {
+        return orderService.findAll(cursor, size, sortBy, withTotal)
+                .map(ResponseEntity::ok);
+    }
+
+    @ApiOperation(value = "Export all orders", notes = "Stream every order as NDJSON or CSV without buffering the result.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Orders streamed successfully", response = StreamingResponseBody.class),
+            @ApiResponse(code = 400, message = "Unsupported export format", response = ResponseEntity.class)
+    })
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportAll(@RequestParam(defaultValue = "ndjson") String format) {
+        log.info("*** StreamingResponseBody, controller; export all orders *");
+        ExportFormat exportFormat = ExportFormat.from(format);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=orders." + exportFormat.getExtension())
+                .body(outputStream -> orderService.exportAll(exportFormat, outputStream));
+    }
+
     @ApiOperation(value = "Get order by ID", notes = "Retrieve order information based on the provided ID.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Order retrieved successfully", response = OrderDto.class),
+            @ApiResponse(code = 304, message = "Order not modified since the given ETag", response = ResponseEntity.class),
             @ApiResponse(code = 404, message = "Order not found", response = ResponseEntity.class)
     })
     @GetMapping("/{orderId}")
     @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER')")
-    public ResponseEntity<Mono<OrderDto>> findById(@PathVariable("orderId")
+    public Mono<ResponseEntity<OrderDto>> findById(@PathVariable("orderId")
                                                    @NotBlank(message = "Input must not be blank")
-                                                   @Valid final String orderId) {
+                                                   @Valid final String orderId,
+                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                   final String ifNoneMatch) {
         log.info("*** OrderDto, resource; fetch order by id *");
-        return ResponseEntity.ok(orderService.findById(Integer.parseInt(orderId)));
+        Integer id = Integer.parseInt(orderId);
+        return ETagHelper.conditional(orderService.findETag(id), ifNoneMatch, () -> orderService.findById(id));
+    }
+
+    @ApiOperation(value = "Get orders by IDs", notes = "Retrieve several orders in a single request, unknown IDs are skipped.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Orders retrieved successfully", response = List.class),
+            @ApiResponse(code = 400, message = "Too many IDs requested", response = ResponseEntity.class)
+    })
+    @GetMapping("/by-ids")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER') or hasAuthority('SERVICE')")
+    public Mono<ResponseEntity<List<OrderDto>>> findAllByIds(@RequestParam("ids")
+                                                             @NotNull(message = "Input must not be NULL")
+                                                             final List<Integer> orderIds) {
+        log.info("*** OrderDto List, resource; fetch orders by ids *");
+        return orderService.findAllByIds(orderIds)
+                .map(ResponseEntity::ok);
+    }
+
+    // same lookup with the ids in the body, a full batch of ids does not fit in a request line
+    @ApiOperation(value = "Get orders by IDs (POST)", notes = "Retrieve the orders for the IDs in the request body, unknown IDs are skipped.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Orders retrieved successfully", response = List.class),
+            @ApiResponse(code = 400, message = "Too many IDs requested", response = ResponseEntity.class)
+    })
+    @PostMapping("/by-ids")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER') or hasAuthority('SERVICE')")
+    public Mono<ResponseEntity<List<OrderDto>>> postAllByIds(@RequestBody
+                                                             @NotNull(message = "Input must not be NULL")
+                                                             final List<Integer> orderIds) {
+        log.info("*** OrderDto List, resource; fetch orders by ids *");
+        return orderService.findAllByIds(orderIds)
+                .map(ResponseEntity::ok);
     }
 
     @ApiOperation(value = "Save order", notes = "Save a new order.")
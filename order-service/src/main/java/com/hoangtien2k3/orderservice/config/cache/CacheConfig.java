@@ -0,0 +1,9 @@
+package com.hoangtien2k3.orderservice.config.cache;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ProductCacheProperties.class)
+public class CacheConfig {
+}
@@ -0,0 +1,19 @@
+package com.hoangtien2k3.orderservice.config.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "ecommerce.cache.product")
+public class ProductCacheProperties {
+
+    private long maximumSize = 10_000;
+
+    // entries are reloaded in the background once older than refreshAfterWrite
+    // and dropped when older than expireAfterWrite
+    private Duration refreshAfterWrite = Duration.ofMinutes(1);
+    private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+}
@@ -1,13 +1,35 @@
 package com.hoangtien2k3.orderservice.config.client;
 
+import com.hoangtien2k3.commonlib.client.EnrichmentExecutor;
+import com.hoangtien2k3.commonlib.client.RequestDeadline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Configuration
-public class ClientConfig {
+@EnableConfigurationProperties(ClientProperties.class)
+public class ClientConfig implements DisposableBean {
+
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
     @LoadBalanced
     @Bean
     public RestTemplate restTemplateBean() {
@@ -18,4 +40,77 @@ public class ClientConfig {
     public WebClient.Builder webClientBuilder() {
         return WebClient.builder();
     }
+
+    @Bean
+    public EnrichmentExecutor enrichmentExecutor(ClientProperties clientProperties, MeterRegistry meterRegistry) {
+        return new EnrichmentExecutor(clientProperties.getFanOut(), meterRegistry);
+    }
+
+    @Bean
+    public RequestDeadlineFilter requestDeadlineFilter() {
+        return new RequestDeadlineFilter();
+    }
+
+    @Bean
+    public WebClient userWebClient(WebClient.Builder webClientBuilder,
+                                   ClientProperties clientProperties,
+                                   ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancerFilter) {
+        return buildWebClient("user-service", clientProperties.getUserServiceUrl(),
+                webClientBuilder, clientProperties, loadBalancerFilter);
+    }
+
+    @Bean
+    public WebClient productWebClient(WebClient.Builder webClientBuilder,
+                                      ClientProperties clientProperties,
+                                      ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancerFilter) {
+        return buildWebClient("product-service", clientProperties.getProductServiceUrl(),
+                webClientBuilder, clientProperties, loadBalancerFilter);
+    }
+
+    // each downstream gets its own prebuilt client and pool; the shared builder is cloned, never mutated.
+    private WebClient buildWebClient(String name,
+                                     String baseUrl,
+                                     WebClient.Builder webClientBuilder,
+                                     ClientProperties clientProperties,
+                                     ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancerFilter) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(clientProperties.getMaxConnections())
+                .pendingAcquireMaxCount(clientProperties.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(clientProperties.getPendingAcquireTimeout())
+                .maxIdleTime(clientProperties.getMaxIdleTime())
+                .maxLifeTime(clientProperties.getMaxLifeTime())
+                .evictInBackground(clientProperties.getEvictInBackground())
+                .metrics(true)
+                .build();
+        connectionProviders.add(connectionProvider);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) clientProperties.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .responseTimeout(clientProperties.getResponseTimeout());
+
+        WebClient.Builder builder = webClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(propagateDeadline());
+        if (clientProperties.isLoadBalanced()) {
+            loadBalancerFilter.ifAvailable(builder::filter);
+        }
+        return builder.build();
+    }
+
+    // calls made through the EnrichmentExecutor tell the downstream how much time is left
+    private static ExchangeFilterFunction propagateDeadline() {
+        return (request, next) -> Mono.deferContextual(context -> next.exchange(context.<Instant>getOrEmpty(RequestDeadline.CONTEXT_KEY)
+                .map(deadline -> ClientRequest.from(request)
+                        .header(RequestDeadline.HEADER, RequestDeadline.remaining(deadline))
+                        .build())
+                .orElse(request)));
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
 }
@@ -0,0 +1,32 @@
+package com.hoangtien2k3.orderservice.config.client;
+
+import com.hoangtien2k3.commonlib.client.FanOutProperties;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "ecommerce.client")
+public class ClientProperties {
+
+    // base urls of the downstream services, e.g. http://USER-SERVICE when load-balanced through eureka
+    private String userServiceUrl = "http://localhost:8088";
+    private String productServiceUrl = "http://localhost:8086";
+    private boolean loadBalanced = false;
+
+    // reactor netty connection pool, one per downstream service
+    private int maxConnections = 200;
+    private int pendingAcquireMaxCount = 1000;
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+    private Duration maxLifeTime = Duration.ofMinutes(5);
+    private Duration evictInBackground = Duration.ofSeconds(30);
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration responseTimeout = Duration.ofSeconds(5);
+
+    // adaptive fan-out of enrichment calls, one limiter per downstream service
+    private FanOutProperties fanOut = new FanOutProperties();
+
+}
@@ -0,0 +1,27 @@
+package com.hoangtien2k3.orderservice.config.client;
+
+import com.hoangtien2k3.commonlib.client.RequestDeadline;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Instant;
+
+// records the deadline announced by the caller, the EnrichmentExecutor keeps nested calls within it
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Instant deadline = RequestDeadline.resolve(request.getHeader(RequestDeadline.HEADER), Instant.now());
+        if (deadline != null) {
+            request.setAttribute(RequestDeadline.ATTRIBUTE, deadline);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.hoangtien2k3.orderservice.config.jpa;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+// fills @CreatedDate / @LastModifiedDate of AbstractMappedEntity, updatedAt backs the ETags
+@EnableJpaAuditing
+@Configuration
+public class JpaAuditingConfig {
+}
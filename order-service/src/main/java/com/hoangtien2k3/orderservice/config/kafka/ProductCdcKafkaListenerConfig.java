@@ -0,0 +1,31 @@
+package com.hoangtien2k3.orderservice.config.kafka;
+
+import com.hoangtien2k3.commonlib.kafka.cdc.config.BaseKafkaListenerConfig;
+import com.hoangtien2k3.commonlib.kafka.cdc.message.ProductCdcMessage;
+import com.hoangtien2k3.commonlib.kafka.cdc.message.ProductMsgKey;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+@EnableKafka
+@Configuration
+public class ProductCdcKafkaListenerConfig extends BaseKafkaListenerConfig<ProductMsgKey, ProductCdcMessage> {
+
+    public static final String PRODUCT_CDC_LISTENER_CONTAINER_FACTORY = "productCdcListenerContainerFactory";
+
+    public ProductCdcKafkaListenerConfig(KafkaProperties kafkaProperties) {
+        super(ProductMsgKey.class, ProductCdcMessage.class, kafkaProperties);
+    }
+
+    @Bean(name = PRODUCT_CDC_LISTENER_CONTAINER_FACTORY)
+    @Override
+    public ConcurrentKafkaListenerContainerFactory<ProductMsgKey, ProductCdcMessage> listenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<ProductMsgKey, ProductCdcMessage> factory = super.kafkaListenerContainerFactory();
+        // the per-instance groups never acknowledge, so no offsets are committed for them
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+}
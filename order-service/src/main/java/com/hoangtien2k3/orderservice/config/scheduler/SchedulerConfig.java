@@ -0,0 +1,21 @@
+package com.hoangtien2k3.orderservice.config.scheduler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@EnableScheduling
+@Configuration
+public class SchedulerConfig {
+
+    // blocking JPA calls run here instead of on the subscribing (netty / request) thread,
+    // sized to the connection pool so threads never wait on each other for a connection.
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jdbcScheduler(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int maxPoolSize,
+                                   @Value("${ecommerce.jdbc.scheduler.queue-size:10000}") int queueSize) {
+        return Schedulers.newBoundedElastic(maxPoolSize, queueSize, "jdbc");
+    }
+}
@@ -1,8 +1,10 @@
 package com.hoangtien2k3.orderservice.config.web;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
 import com.hoangtien2k3.orderservice.security.JwtEntryPoint;
 import com.hoangtien2k3.orderservice.security.JwtTokenFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -26,6 +28,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         this.jwtEntryPoint = jwtEntryPoint;
     }
 
+    @Bean
+    public JwtVerifier jwtVerifier(@Value("${jwt.secret}") String jwtSecret) {
+        return new JwtVerifier(jwtSecret);
+    }
+
     @Bean
     public JwtTokenFilter jwtTokenFilter() {
         return new JwtTokenFilter();
@@ -0,0 +1,14 @@
+package com.hoangtien2k3.orderservice.constrant;
+
+public class KafkaConstant {
+    public static final String AGGREGATE_ORDER = "order";
+    public static final String AGGREGATE_CART = "cart";
+
+    public static final String ORDER_CREATED = "ORDER_CREATED";
+    public static final String ORDER_UPDATED = "ORDER_UPDATED";
+    public static final String ORDER_DELETED = "ORDER_DELETED";
+    public static final String CART_CREATED = "CART_CREATED";
+
+    public static final String HEADER_EVENT_TYPE = "eventType";
+    public static final String HEADER_AGGREGATE_TYPE = "aggregateType";
+}
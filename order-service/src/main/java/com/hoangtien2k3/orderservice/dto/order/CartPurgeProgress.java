@@ -0,0 +1,67 @@
+package com.hoangtien2k3.orderservice.dto.order;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+public class CartPurgeProgress {
+
+    public enum Status {RUNNING, COMPLETED, FAILED}
+
+    private final String jobId = UUID.randomUUID().toString();
+    private final String criteria;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private final Instant startedAt = Instant.now();
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private volatile Instant finishedAt;
+
+    private volatile Status status = Status.RUNNING;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private volatile String error;
+
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong cartsDeleted = new AtomicLong();
+    private final AtomicLong ordersDeleted = new AtomicLong();
+
+    // keyset position of the last purged chunk
+    private volatile int lastCartId;
+    @JsonIgnore
+    private volatile boolean exhausted;
+
+    public CartPurgeProgress(String criteria) {
+        this.criteria = criteria;
+    }
+
+    public void chunkPurged(int lastCartId, int carts, int orders, boolean exhausted) {
+        this.lastCartId = lastCartId;
+        this.exhausted = exhausted;
+        this.chunks.incrementAndGet();
+        this.cartsDeleted.addAndGet(carts);
+        this.ordersDeleted.addAndGet(orders);
+    }
+
+    public void exhausted() {
+        this.exhausted = true;
+    }
+
+    public void completed() {
+        this.status = Status.COMPLETED;
+        this.finishedAt = Instant.now();
+    }
+
+    public void failed(Throwable throwable) {
+        this.error = throwable.getMessage();
+        this.status = Status.FAILED;
+        this.finishedAt = Instant.now();
+    }
+}
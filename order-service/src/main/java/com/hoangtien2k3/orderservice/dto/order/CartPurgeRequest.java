@@ -0,0 +1,22 @@
+package com.hoangtien2k3.orderservice.dto.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// exactly one of cartIds or olderThanDays selects the carts to purge
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class CartPurgeRequest {
+
+    private List<Integer> cartIds;
+
+    // purge carts not updated for this many days
+    private Integer olderThanDays;
+
+}
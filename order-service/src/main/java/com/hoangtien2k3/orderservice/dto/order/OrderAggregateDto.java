@@ -0,0 +1,27 @@
+package com.hoangtien2k3.orderservice.dto.order;
+
+import com.hoangtien2k3.orderservice.entity.OrderRollup;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class OrderAggregateDto implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private OrderRollup.Dimension dimension;
+    private String key;
+    private Long orderCount;
+    private BigDecimal feeSum;
+
+}
@@ -8,14 +8,17 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
+import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.Instant;
 
 @MappedSuperclass
+@EntityListeners(AuditingEntityListener.class)
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
 @Data
@@ -26,12 +29,13 @@ abstract public class AbstractMappedEntity implements Serializable {
 
     @CreatedDate
     @JsonFormat(shape = Shape.STRING)
-    @Column(name = "created_at")
+    // microsecond precision, the timestamps are the version behind the ETag of the row
+    @Column(name = "created_at", columnDefinition = "TIMESTAMP(6)")
     private Instant createdAt;
 
     @LastModifiedDate
     @JsonFormat(shape = Shape.STRING)
-    @Column(name = "updated_at")
+    @Column(name = "updated_at", columnDefinition = "TIMESTAMP(6)")
     private Instant updatedAt;
 
 }
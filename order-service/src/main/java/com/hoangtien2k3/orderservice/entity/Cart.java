@@ -20,7 +20,8 @@ public final class Cart extends AbstractMappedEntity {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carts_seq")
+    @SequenceGenerator(name = "carts_seq", sequenceName = "carts_seq", allocationSize = 50)
     @Column(name = "cart_id", unique = true, nullable = false, updatable = false)
     private Integer cartId;
 
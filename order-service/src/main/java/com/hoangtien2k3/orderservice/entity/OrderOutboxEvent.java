@@ -0,0 +1,45 @@
+package com.hoangtien2k3.orderservice.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+@Entity
+@Table(name = "order_outbox")
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class OrderOutboxEvent implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // AUTO_INCREMENT, inserted right away at persist: writers of one aggregate hold its row lock when
+    // they append, so their events get ids in commit order. Pooled sequence blocks would not.
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", unique = true, nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "aggregate_type", nullable = false)
+    private String aggregateType;
+
+    // kafka record key, keeps the events of one aggregate on one partition in order
+    @Column(name = "aggregate_id", nullable = false)
+    private String aggregateId;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+}
@@ -0,0 +1,52 @@
+package com.hoangtien2k3.orderservice.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+// one counter row per (dimension, key), e.g. (DAY, 2024-05-01) or (PRODUCT, 42)
+@Entity
+@Table(name = "order_rollups")
+@IdClass(OrderRollup.OrderRollupId.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class OrderRollup implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "dimension", nullable = false)
+    private Dimension dimension;
+
+    @Id
+    @Column(name = "dim_key", nullable = false)
+    private String dimKey;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount;
+
+    @Column(name = "fee_sum", nullable = false)
+    private BigDecimal feeSum;
+
+    public enum Dimension {DAY, PRODUCT, USER}
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class OrderRollupId implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Dimension dimension;
+        private String dimKey;
+
+    }
+}
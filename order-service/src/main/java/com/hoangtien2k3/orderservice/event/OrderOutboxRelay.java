@@ -0,0 +1,98 @@
+package com.hoangtien2k3.orderservice.event;
+
+import com.hoangtien2k3.orderservice.constrant.KafkaConstant;
+import com.hoangtien2k3.orderservice.entity.OrderOutboxEvent;
+import com.hoangtien2k3.orderservice.repository.OrderOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the order outbox to Kafka. A batch is sent in id order, keyed by aggregate id, and only
+ * deleted once every record is acknowledged; a crash in between resends the batch (at-least-once).
+ */
+@Slf4j
+@Component
+public class OrderOutboxRelay {
+
+    private final OrderOutboxRepository orderOutboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String topic;
+    private final int batchSize;
+    private final Duration sendTimeout;
+
+    public OrderOutboxRelay(OrderOutboxRepository orderOutboxRepository,
+                            KafkaTemplate<String, String> kafkaTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${order.topic.name}") String topic,
+                            @Value("${order.outbox.relay.batch-size:500}") int batchSize,
+                            @Value("${order.outbox.relay.send-timeout:10s}") Duration sendTimeout) {
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.relay.interval-ms:500}")
+    public void relay() {
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Order outbox relay failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+        List<OrderOutboxEvent> events = orderOutboxRepository.findNextBatch(PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // send the whole batch first so the producer can group it (linger.ms / batch.size), then wait
+        List<Future<SendResult<String, String>>> acks = new ArrayList<>(events.size());
+        for (OrderOutboxEvent event : events) {
+            ProducerRecord<String, String> record = new ProducerRecord<>(topic, event.getAggregateId(), event.getPayload());
+            record.headers().add(KafkaConstant.HEADER_EVENT_TYPE, event.getEventType().getBytes(StandardCharsets.UTF_8));
+            record.headers().add(KafkaConstant.HEADER_AGGREGATE_TYPE, event.getAggregateType().getBytes(StandardCharsets.UTF_8));
+            acks.add(kafkaTemplate.send(record));
+        }
+        kafkaTemplate.flush();
+        try {
+            for (Future<SendResult<String, String>> ack : acks) {
+                ack.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while relaying order outbox", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // the rollback keeps the rows, the next run sends them again
+            throw new IllegalStateException("Could not relay order outbox batch: " + e.getMessage(), e);
+        }
+
+        orderOutboxRepository.deleteAllByIdIn(events.stream().map(OrderOutboxEvent::getId).toList());
+        log.debug("Relayed {} order events to {}", events.size(), topic);
+        return events.size();
+    }
+}
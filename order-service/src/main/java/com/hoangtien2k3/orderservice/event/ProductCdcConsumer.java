@@ -0,0 +1,49 @@
+package com.hoangtien2k3.orderservice.event;
+
+import com.hoangtien2k3.commonlib.kafka.cdc.BaseCdcConsumer;
+import com.hoangtien2k3.commonlib.kafka.cdc.message.ProductCdcMessage;
+import com.hoangtien2k3.commonlib.kafka.cdc.message.ProductMsgKey;
+import com.hoangtien2k3.orderservice.config.kafka.ProductCdcKafkaListenerConfig;
+import com.hoangtien2k3.orderservice.service.CallAPI;
+import lombok.RequiredArgsConstructor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Headers;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops cached products from the order-service near-cache whenever product-service publishes a change.
+ * Every instance has its own cache, so every instance joins a consumer group of its own and sees every
+ * change. The group starts at the latest offset and never commits, a restarted instance starts with an
+ * empty cache anyway, and the broker drops the empty group once the instance is gone.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCdcConsumer extends BaseCdcConsumer<ProductMsgKey, ProductCdcMessage> {
+
+    private final CallAPI callAPI;
+
+    @KafkaListener(
+            id = "order-product-cache",
+            groupId = "${order.kafka.consumer-group-id}-product-cache-${random.uuid}",
+            topics = "${product.topic.name}",
+            containerFactory = ProductCdcKafkaListenerConfig.PRODUCT_CDC_LISTENER_CONTAINER_FACTORY,
+            properties = {"auto.offset.reset=latest", "enable.auto.commit=false"}
+    )
+    public void listen(@Header(KafkaHeaders.RECEIVED_KEY) ProductMsgKey key,
+                       @Payload(required = false) ProductCdcMessage productCdcMessage,
+                       @Headers MessageHeaders headers) {
+        processMessage(key, productCdcMessage, headers, this::evict);
+    }
+
+    // every operation (including tombstones with a null value) just invalidates, the next read reloads.
+    private void evict(ProductMsgKey key, ProductCdcMessage productCdcMessage) {
+        if (key == null || key.getId() == null) {
+            return;
+        }
+        callAPI.evictProductDto(key.getId().intValue());
+    }
+}
@@ -5,7 +5,10 @@ import com.hoangtien2k3.orderservice.dto.order.OrderDto;
 import com.hoangtien2k3.orderservice.dto.user.UserDto;
 import com.hoangtien2k3.orderservice.entity.Cart;
 import com.hoangtien2k3.orderservice.entity.Order;
+import com.hoangtien2k3.orderservice.repository.projection.CartView;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
 
+import java.util.Collection;
 import java.util.stream.Collectors;
 
 public interface CartMappingHelper {
@@ -30,6 +33,27 @@ public interface CartMappingHelper {
                 .build();
     }
 
+    static CartDto map(final CartView cartView, final Collection<OrderView> orderViews) {
+        if (cartView == null) return null;
+        return CartDto.builder()
+                .cartId(cartView.cartId())
+                .userId(cartView.userId())
+                .orderDtos(orderViews
+                        .stream()
+                        .map(orderView -> OrderDto.builder()
+                                .orderId(orderView.orderId())
+                                .orderDate(orderView.orderDate())
+                                .orderDesc(orderView.orderDesc())
+                                .orderFee(orderView.orderFee())
+                                .build())
+                        .collect(Collectors.toSet()))
+                .userDto(
+                        UserDto.builder()
+                                .id(cartView.userId())
+                                .build())
+                .build();
+    }
+
     static Cart map(final CartDto cartDto) {
         if (cartDto == null) return null;
         return Cart.builder()
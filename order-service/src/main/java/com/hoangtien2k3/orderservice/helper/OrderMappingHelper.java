@@ -5,6 +5,7 @@ import com.hoangtien2k3.orderservice.dto.order.OrderDto;
 import com.hoangtien2k3.orderservice.dto.product.ProductDto;
 import com.hoangtien2k3.orderservice.entity.Cart;
 import com.hoangtien2k3.orderservice.entity.Order;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
 
 public interface OrderMappingHelper {
     static OrderDto map(Order order) {
@@ -22,6 +23,21 @@ public interface OrderMappingHelper {
                 .build();
     }
 
+    static OrderDto map(final OrderView orderView) {
+        if (orderView == null) return null;
+        return OrderDto.builder()
+                .orderId(orderView.orderId())
+                .orderDate(orderView.orderDate())
+                .orderDesc(orderView.orderDesc())
+                .orderFee(orderView.orderFee())
+                .productId(orderView.productId())
+                .cartDto(CartDto.builder()
+                        .cartId(orderView.cartId())
+                        .userId(orderView.userId())
+                        .build())
+                .build();
+    }
+
     static Order map(final OrderDto orderDto) {
         if (orderDto == null) return null;
         return Order.builder()
@@ -1,10 +1,56 @@
 package com.hoangtien2k3.orderservice.repository;
 
 import com.hoangtien2k3.orderservice.entity.Cart;
+import com.hoangtien2k3.orderservice.repository.projection.CartVersion;
+import com.hoangtien2k3.orderservice.repository.projection.CartView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Integer> {
 
-}
\ No newline at end of file
+    String CART_VIEW = "SELECT new com.hoangtien2k3.orderservice.repository.projection.CartView(c.cartId, c.userId) " +
+            "FROM Cart c ";
+
+    @Query(CART_VIEW)
+    List<CartView> findAllViews();
+
+    @Query(value = CART_VIEW, countQuery = "SELECT COUNT(c) FROM Cart c")
+    Page<CartView> findAllViews(Pageable pageable);
+
+    @Query(CART_VIEW + "WHERE c.cartId = :cartId")
+    Optional<CartView> findViewById(@Param("cartId") Integer cartId);
+
+    @Query("SELECT new com.hoangtien2k3.orderservice.repository.projection.CartVersion(" +
+            "COALESCE(c.updatedAt, c.createdAt), MAX(COALESCE(o.updatedAt, o.createdAt)), COUNT(o)) " +
+            "FROM Cart c LEFT JOIN c.orders o WHERE c.cartId = :cartId GROUP BY c.cartId, c.updatedAt, c.createdAt")
+    Optional<CartVersion> findVersionById(@Param("cartId") Integer cartId);
+
+    // keyset pagination, the pageable only carries the limit
+    @Query(CART_VIEW + "ORDER BY c.cartId ASC")
+    List<CartView> findFirstPageByCartId(Pageable pageable);
+
+    @Query(CART_VIEW + "WHERE c.cartId > :cartId ORDER BY c.cartId ASC")
+    List<CartView> findNextPageByCartId(@Param("cartId") Integer cartId, Pageable pageable);
+
+    // bulk purge, ids only so no entity is loaded into the persistence context
+    @Query("SELECT c.cartId FROM Cart c WHERE COALESCE(c.updatedAt, c.createdAt) < :updatedBefore AND c.cartId > :cartId ORDER BY c.cartId ASC")
+    List<Integer> findIdsUpdatedBefore(@Param("updatedBefore") Instant updatedBefore,
+                                       @Param("cartId") Integer cartId,
+                                       Pageable pageable);
+
+    @Modifying
+    @Query(value = "DELETE FROM carts WHERE cart_id IN (:cartIds)", nativeQuery = true)
+    int deleteAllByCartIdIn(@Param("cartIds") Collection<Integer> cartIds);
+
+}
@@ -0,0 +1,28 @@
+package com.hoangtien2k3.orderservice.repository;
+
+import com.hoangtien2k3.orderservice.entity.OrderOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    // the row lock serializes relays of several instances; ids of one aggregate follow commit
+    // order (see OrderEventOutbox), rows of other aggregates still in flight are picked up later
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OrderOutboxEvent e ORDER BY e.id ASC")
+    List<OrderOutboxEvent> findNextBatch(Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM OrderOutboxEvent e WHERE e.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -2,14 +2,89 @@ package com.hoangtien2k3.orderservice.repository;
 
 import com.hoangtien2k3.orderservice.entity.Cart;
 import com.hoangtien2k3.orderservice.entity.Order;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Integer> {
+
+    // read side selects only the columns of OrderView, no entity is hydrated or tracked
+    String ORDER_VIEW = "SELECT new com.hoangtien2k3.orderservice.repository.projection.OrderView(" +
+            "o.orderId, o.orderDate, o.orderDesc, o.orderFee, o.productId, c.cartId, c.userId) " +
+            "FROM Order o LEFT JOIN o.cart c ";
+
     @Modifying
     @Query("DELETE FROM Order o WHERE o.cart = :cart")
     void deleteAllByCart(Cart cart);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query(value = "DELETE FROM orders WHERE cart_id IN (:cartIds)", nativeQuery = true)
+    int deleteAllByCartIdIn(@Param("cartIds") Collection<Integer> cartIds);
+
+    @Query(ORDER_VIEW)
+    List<OrderView> findAllViews();
+
+    @Query(value = ORDER_VIEW, countQuery = "SELECT COUNT(o) FROM Order o")
+    Page<OrderView> findAllViews(Pageable pageable);
+
+    @Query(ORDER_VIEW + "WHERE o.orderId = :orderId")
+    Optional<OrderView> findViewById(@Param("orderId") Integer orderId);
+
+    // locking reads of the before-image: a concurrent writer of the same orders waits until this
+    // transaction commits, so it never subtracts an image that was already replaced
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(ORDER_VIEW + "WHERE o.orderId = :orderId")
+    Optional<OrderView> findViewForUpdate(@Param("orderId") Integer orderId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(ORDER_VIEW + "WHERE c.cartId IN :cartIds")
+    List<OrderView> findViewsByCartIdInForUpdate(@Param("cartIds") Collection<Integer> cartIds);
+
+    @Query("SELECT COALESCE(o.updatedAt, o.createdAt) FROM Order o WHERE o.orderId = :orderId")
+    Optional<Instant> findVersionById(@Param("orderId") Integer orderId);
+
+    @Query(ORDER_VIEW + "WHERE o.orderId IN :orderIds")
+    List<OrderView> findViewsByOrderIdIn(@Param("orderIds") Collection<Integer> orderIds);
+
+    @Query(ORDER_VIEW + "WHERE c.cartId IN :cartIds")
+    List<OrderView> findViewsByCartIdIn(@Param("cartIds") Collection<Integer> cartIds);
+
+    // keyset pagination, the pageable only carries the limit
+    @Query(ORDER_VIEW + "ORDER BY o.orderId ASC")
+    List<OrderView> findFirstPageByOrderId(Pageable pageable);
+
+    @Query(ORDER_VIEW + "WHERE o.orderId > :orderId ORDER BY o.orderId ASC")
+    List<OrderView> findNextPageByOrderId(@Param("orderId") Integer orderId, Pageable pageable);
+
+    @Query(ORDER_VIEW + "ORDER BY o.orderDate ASC, o.orderId ASC")
+    List<OrderView> findFirstPageByOrderDate(Pageable pageable);
+
+    @Query(ORDER_VIEW +
+            "WHERE o.orderDate > :orderDate OR (o.orderDate = :orderDate AND o.orderId > :orderId) " +
+            "ORDER BY o.orderDate ASC, o.orderId ASC")
+    List<OrderView> findNextPageByOrderDate(@Param("orderDate") LocalDateTime orderDate,
+                                            @Param("orderId") Integer orderId,
+                                            Pageable pageable);
+
+    // server-side cursor (useCursorFetch) instead of loading the whole result set; must be closed
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query(ORDER_VIEW + "ORDER BY o.orderId ASC")
+    Stream<OrderView> streamAll();
+}
@@ -0,0 +1,50 @@
+package com.hoangtien2k3.orderservice.repository;
+
+import com.hoangtien2k3.orderservice.entity.OrderRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface OrderRollupRepository extends JpaRepository<OrderRollup, OrderRollup.OrderRollupId> {
+
+    @Modifying
+    @Query(value = "INSERT INTO order_rollups (dimension, dim_key, order_count, fee_sum) " +
+            "VALUES (:dimension, :dimKey, :orderCount, :feeSum) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), fee_sum = fee_sum + VALUES(fee_sum)",
+            nativeQuery = true)
+    void increment(@Param("dimension") String dimension,
+                   @Param("dimKey") String dimKey,
+                   @Param("orderCount") long orderCount,
+                   @Param("feeSum") BigDecimal feeSum);
+
+    @Modifying
+    @Query(value = "DELETE FROM order_rollups", nativeQuery = true)
+    int deleteAllRollups();
+
+    // backfill, one GROUP BY per dimension over the fact tables
+    @Modifying
+    @Query(value = "INSERT INTO order_rollups (dimension, dim_key, order_count, fee_sum) " +
+            "SELECT 'DAY', DATE_FORMAT(order_date, '%Y-%m-%d'), COUNT(*), COALESCE(SUM(order_fee), 0) " +
+            "FROM orders WHERE order_date IS NOT NULL GROUP BY DATE_FORMAT(order_date, '%Y-%m-%d')",
+            nativeQuery = true)
+    int rebuildByDay();
+
+    @Modifying
+    @Query(value = "INSERT INTO order_rollups (dimension, dim_key, order_count, fee_sum) " +
+            "SELECT 'PRODUCT', CAST(product_id AS CHAR), COUNT(*), COALESCE(SUM(order_fee), 0) " +
+            "FROM orders WHERE product_id IS NOT NULL GROUP BY product_id",
+            nativeQuery = true)
+    int rebuildByProduct();
+
+    @Modifying
+    @Query(value = "INSERT INTO order_rollups (dimension, dim_key, order_count, fee_sum) " +
+            "SELECT 'USER', CAST(c.user_id AS CHAR), COUNT(*), COALESCE(SUM(o.order_fee), 0) " +
+            "FROM orders o JOIN carts c ON c.cart_id = o.cart_id WHERE c.user_id IS NOT NULL GROUP BY c.user_id",
+            nativeQuery = true)
+    int rebuildByUser();
+}
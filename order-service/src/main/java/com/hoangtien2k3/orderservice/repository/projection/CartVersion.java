@@ -0,0 +1,7 @@
+package com.hoangtien2k3.orderservice.repository.projection;
+
+import java.time.Instant;
+
+// a cart representation changes with the cart row and with any of its orders
+public record CartVersion(Instant updatedAt, Instant ordersUpdatedAt, Long orderCount) {
+}
@@ -0,0 +1,4 @@
+package com.hoangtien2k3.orderservice.repository.projection;
+
+public record CartView(Integer cartId, Long userId) {
+}
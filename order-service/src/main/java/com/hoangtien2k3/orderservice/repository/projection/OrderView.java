@@ -0,0 +1,13 @@
+package com.hoangtien2k3.orderservice.repository.projection;
+
+import java.time.LocalDateTime;
+
+// read model of an order, selected column by column instead of hydrating Order and its Cart
+public record OrderView(Integer orderId,
+                        LocalDateTime orderDate,
+                        String orderDesc,
+                        Double orderFee,
+                        Integer productId,
+                        Integer cartId,
+                        Long userId) {
+}
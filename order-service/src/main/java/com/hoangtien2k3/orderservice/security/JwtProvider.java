@@ -1,7 +1,10 @@
 package com.hoangtien2k3.orderservice.security;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
+import com.hoangtien2k3.commonlib.security.revocation.TokenDenylist;
 import io.jsonwebtoken.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -16,17 +19,17 @@ import java.util.List;
 @Slf4j
 public class JwtProvider {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
-
     @Value("${jwt.expiration}")
     private int jwtExpiration;
 
+    @Autowired
+    private JwtVerifier jwtVerifier;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
     public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = jwtVerifier.verifyForRequest(token);
 
         String username = claims.getSubject();
         List<GrantedAuthority> authorities = extractAuthorities(claims);
@@ -51,10 +54,11 @@ public class JwtProvider {
 
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token);
-
+            Claims claims = jwtVerifier.verifyForRequest(token);
+            if (tokenDenylist.isRevoked(claims.getId())) {
+                log.error("Revoked JWT Token -> jti: {}", claims.getId());
+                return false;
+            }
             return true;
         } catch (SignatureException e) {
             log.error("Invalid JWT signature -> Message: ", e);
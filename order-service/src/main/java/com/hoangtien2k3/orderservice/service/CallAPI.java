@@ -1,37 +1,139 @@
 package com.hoangtien2k3.orderservice.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hoangtien2k3.orderservice.config.cache.ProductCacheProperties;
 import com.hoangtien2k3.orderservice.dto.product.ProductDto;
 import com.hoangtien2k3.orderservice.dto.user.UserDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Component
 public class CallAPI {
-    private final WebClient.Builder webClientBuilder;
+    // product-service answers 400 beyond ProductServiceImpl.MAX_LOOKUP_IDS ids
+    private static final int PRODUCT_LOOKUP_CHUNK_SIZE = 500;
+
+    private final WebClient userWebClient;
+    private final WebClient productWebClient;
+
+    // near-cache of product-service responses, invalidated by the product CDC topic
+    private final AsyncLoadingCache<Integer, ProductDto> productCache;
 
     @Autowired
-    public CallAPI(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public CallAPI(@Qualifier("userWebClient") WebClient userWebClient,
+                   @Qualifier("productWebClient") WebClient productWebClient,
+                   ProductCacheProperties productCacheProperties,
+                   MeterRegistry meterRegistry) {
+        this.userWebClient = userWebClient;
+        this.productWebClient = productWebClient;
+        this.productCache = Caffeine.newBuilder()
+                .maximumSize(productCacheProperties.getMaximumSize())
+                .refreshAfterWrite(productCacheProperties.getRefreshAfterWrite())
+                .expireAfterWrite(productCacheProperties.getExpireAfterWrite())
+                .recordStats()
+                .buildAsync(new ProductCacheLoader());
+        CaffeineCacheMetrics.monitor(meterRegistry, productCache.synchronous(), "productCache");
     }
 
     public Mono<UserDto> receiverUserDto(Long userId, String token) {
-        return webClientBuilder.baseUrl("http://localhost:8088").build()
+        return userWebClient
                 .get()
-                .uri("/api/manager/user/" + userId)
+                .uri("/api/manager/user/{userId}", userId)
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
                 .retrieve()
                 .bodyToMono(UserDto.class);
     }
 
+    // ids travel in the body, a page of them would not fit in a request line
+    public Mono<Map<Long, UserDto>> receiverUserDtos(Collection<Long> userIds, String token) {
+        return userWebClient
+                .post()
+                .uri("/api/manager/users/by-ids")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(userIds)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<Long, UserDto>>() {
+                });
+    }
+
+    // the cached future is shared between callers, so a cancelled subscriber must not cancel it
     public Mono<ProductDto> receiverProductDto(Integer productId) {
-        return webClientBuilder.baseUrl("http://localhost:8086").build()
+        return Mono.fromFuture(productCache.get(productId), true);
+    }
+
+    public Mono<List<ProductDto>> receiverProductDtos(Collection<Integer> productIds) {
+        return Mono.fromFuture(productCache.getAll(productIds), true)
+                .map(productsById -> new ArrayList<>(productsById.values()));
+    }
+
+    public void evictProductDto(Integer productId) {
+        productCache.synchronous().invalidate(productId);
+    }
+
+    private Mono<ProductDto> fetchProductDto(Integer productId) {
+        return productWebClient
                 .get()
-                .uri("/api/products/" + productId)
+                .uri("/api/products/{productId}", productId)
                 .retrieve()
                 .bodyToMono(ProductDto.class);
     }
 
+    // ids travel in the body, one request per chunk keeps each one under the cap of product-service
+    private Mono<List<ProductDto>> fetchProductDtos(Collection<? extends Integer> productIds) {
+        return Flux.fromIterable(chunks(productIds, PRODUCT_LOOKUP_CHUNK_SIZE))
+                .flatMap(chunk -> productWebClient
+                        .post()
+                        .uri("/api/products/by-ids")
+                        .bodyValue(chunk)
+                        .retrieve()
+                        .bodyToFlux(ProductDto.class))
+                .collectList();
+    }
+
+    private static <T> List<List<T>> chunks(Collection<? extends T> values, int chunkSize) {
+        List<T> ids = List.copyOf(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    private final class ProductCacheLoader implements AsyncCacheLoader<Integer, ProductDto> {
+
+        @Override
+        public CompletableFuture<ProductDto> asyncLoad(Integer productId, Executor executor) {
+            return fetchProductDto(productId).toFuture();
+        }
+
+        // misses of a bulk lookup are loaded with by-ids requests
+        @Override
+        public CompletableFuture<Map<Integer, ProductDto>> asyncLoadAll(Set<? extends Integer> productIds,
+                                                                        Executor executor) {
+            return fetchProductDtos(productIds)
+                    .map(productDtos -> productDtos.stream()
+                            .collect(Collectors.toMap(ProductDto::getProductId, Function.identity(), (a, b) -> a)))
+                    .toFuture();
+        }
+    }
+
 }
@@ -0,0 +1,11 @@
+package com.hoangtien2k3.orderservice.service;
+
+import com.hoangtien2k3.orderservice.dto.order.CartPurgeProgress;
+import com.hoangtien2k3.orderservice.dto.order.CartPurgeRequest;
+import reactor.core.publisher.Mono;
+
+public interface CartPurgeService {
+    Mono<CartPurgeProgress> start(final CartPurgeRequest cartPurgeRequest);
+
+    Mono<CartPurgeProgress> findByJobId(final String jobId);
+}
@@ -1,5 +1,6 @@
 package com.hoangtien2k3.orderservice.service;
 
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
 import com.hoangtien2k3.orderservice.dto.order.CartDto;
 import org.springframework.data.domain.Page;
 import reactor.core.publisher.Mono;
@@ -11,10 +12,17 @@ public interface CartService {
 
     Mono<Page<CartDto>> findAll(int page, int size, String sortBy, String sortOrder);
 
+    Mono<CursorPageResponse<CartDto>> findAll(String cursor, int size, boolean withTotal);
+
     Mono<CartDto> findById(Integer cartId);
 
+    // ETag of the current version, empty when the cart does not exist
+    Mono<String> findETag(Integer cartId);
+
     Mono<CartDto> save(final CartDto cartDto);
 
+    Mono<CartDto> checkout(final CartDto cartDto);
+
     Mono<CartDto> update(final CartDto cartDto);
 
     Mono<CartDto> update(final Integer cartId, final CartDto cartDto);
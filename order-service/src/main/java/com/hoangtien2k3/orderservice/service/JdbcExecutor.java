@@ -0,0 +1,45 @@
+package com.hoangtien2k3.orderservice.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking JPA work on the dedicated jdbc scheduler, inside a transaction bound to that thread,
+ * so repository calls never block the subscribing thread and lazy associations can still be mapped.
+ */
+@Component
+public class JdbcExecutor {
+
+    private final Scheduler jdbcScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public JdbcExecutor(@Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+                        PlatformTransactionManager transactionManager) {
+        this.jdbcScheduler = jdbcScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    public <T> Mono<T> read(Supplier<T> work) {
+        return Mono.fromSupplier(() -> readOnlyTransactionTemplate.execute(status -> work.get()))
+                .subscribeOn(jdbcScheduler);
+    }
+
+    public <T> Mono<T> write(Supplier<T> work) {
+        return Mono.fromSupplier(() -> transactionTemplate.execute(status -> work.get()))
+                .subscribeOn(jdbcScheduler);
+    }
+
+    public Mono<Void> write(Runnable work) {
+        return Mono.<Void>fromRunnable(() -> transactionTemplate.executeWithoutResult(status -> work.run()))
+                .subscribeOn(jdbcScheduler);
+    }
+}
@@ -0,0 +1,20 @@
+package com.hoangtien2k3.orderservice.service;
+
+import com.hoangtien2k3.orderservice.dto.order.OrderAggregateDto;
+import com.hoangtien2k3.orderservice.entity.OrderRollup;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OrderAggregateService {
+    Mono<List<OrderAggregateDto>> findAll(final OrderRollup.Dimension dimension);
+
+    Mono<OrderAggregateDto> findByKey(final OrderRollup.Dimension dimension, final String key);
+
+    Mono<Integer> rebuild();
+
+    // moves the counters from the before to the after image of the changed orders, inside the writing transaction
+    void apply(final Collection<OrderView> before, final Collection<OrderView> after);
+}
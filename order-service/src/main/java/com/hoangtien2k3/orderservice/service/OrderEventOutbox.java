@@ -0,0 +1,46 @@
+package com.hoangtien2k3.orderservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoangtien2k3.orderservice.entity.OrderOutboxEvent;
+import com.hoangtien2k3.orderservice.repository.OrderOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Records an order lifecycle event in the outbox table. Must run inside the transaction that
+ * changes the aggregate, so the event is stored if and only if the change commits. When the
+ * aggregate already exists, the caller must hold its row lock (a locking read or the flushed
+ * update) before appending: the event id is assigned at insert, and the lock makes ids of one
+ * aggregate follow commit order, so a lower id of that aggregate is never still uncommitted.
+ */
+@RequiredArgsConstructor
+@Component
+public class OrderEventOutbox {
+
+    @Autowired
+    private final OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String aggregateType, Object aggregateId, String eventType, Object payload) {
+        try {
+            orderOutboxRepository.save(OrderOutboxEvent.builder()
+                    .aggregateType(aggregateType)
+                    .aggregateId(String.valueOf(aggregateId))
+                    .eventType(eventType)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .createdAt(Instant.now())
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + eventType + " event", e);
+        }
+    }
+}
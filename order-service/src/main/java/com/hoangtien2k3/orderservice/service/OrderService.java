@@ -1,9 +1,14 @@
 package com.hoangtien2k3.orderservice.service;
 
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
+import com.hoangtien2k3.orderservice.constrant.ExportFormat;
 import com.hoangtien2k3.orderservice.dto.order.OrderDto;
 import org.springframework.data.domain.Page;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderService {
@@ -11,8 +16,17 @@ public interface OrderService {
 
     Mono<Page<OrderDto>> findAll(int page, int size, String sortBy, String sortOrder);
 
+    Mono<CursorPageResponse<OrderDto>> findAll(String cursor, int size, String sortBy, boolean withTotal);
+
     Mono<OrderDto> findById(Integer orderId);
 
+    Mono<List<OrderDto>> findAllByIds(Collection<Integer> orderIds);
+
+    // ETag of the current version, empty when the order does not exist
+    Mono<String> findETag(Integer orderId);
+
+    void exportAll(ExportFormat format, OutputStream outputStream) throws IOException;
+
     Mono<OrderDto> save(final OrderDto orderDto);
 
     Mono<OrderDto> update(final OrderDto orderDto);
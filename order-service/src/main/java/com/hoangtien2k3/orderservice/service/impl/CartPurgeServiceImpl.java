@@ -0,0 +1,146 @@
+package com.hoangtien2k3.orderservice.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hoangtien2k3.orderservice.constrant.KafkaConstant;
+import com.hoangtien2k3.orderservice.dto.order.CartPurgeProgress;
+import com.hoangtien2k3.orderservice.dto.order.CartPurgeRequest;
+import com.hoangtien2k3.orderservice.exception.wrapper.CartNotFoundException;
+import com.hoangtien2k3.orderservice.repository.CartRepository;
+import com.hoangtien2k3.orderservice.repository.OrderRepository;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
+import com.hoangtien2k3.orderservice.service.CartPurgeService;
+import com.hoangtien2k3.orderservice.service.JdbcExecutor;
+import com.hoangtien2k3.orderservice.service.OrderAggregateService;
+import com.hoangtien2k3.orderservice.service.OrderEventOutbox;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * Purges carts and their orders in the background, one chunk of ids per transaction with a pause
+ * between chunks, using set-based deletes so no entity is ever loaded.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class CartPurgeServiceImpl implements CartPurgeService {
+
+    @Autowired
+    private final CartRepository cartRepository;
+
+    @Autowired
+    private final OrderRepository orderRepository;
+
+    @Autowired
+    private final JdbcExecutor jdbcExecutor;
+
+    @Autowired
+    private final OrderAggregateService orderAggregateService;
+
+    @Autowired
+    private final OrderEventOutbox orderEventOutbox;
+
+    @Value("${ecommerce.cart.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${ecommerce.cart.purge.pause:200ms}")
+    private Duration pause;
+
+    // finished jobs stay queryable for a day
+    private final Cache<String, CartPurgeProgress> jobs = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofDays(1))
+            .build();
+
+    // one purge at a time, a second one would just compete for the same locks
+    private final AtomicReference<CartPurgeProgress> running = new AtomicReference<>();
+
+    @Override
+    public Mono<CartPurgeProgress> start(final CartPurgeRequest cartPurgeRequest) {
+        log.info("CartPurgeProgress, service; start cart purge");
+        boolean byIds = cartPurgeRequest.getCartIds() != null && !cartPurgeRequest.getCartIds().isEmpty();
+        boolean byAge = cartPurgeRequest.getOlderThanDays() != null;
+        if (byIds == byAge) {
+            return Mono.error(new IllegalStateException("Cart purge requires either cartIds or olderThanDays"));
+        }
+
+        IntFunction<List<Integer>> nextChunk;
+        CartPurgeProgress progress;
+        if (byIds) {
+            List<Integer> cartIds = cartPurgeRequest.getCartIds().stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .sorted()
+                    .toList();
+            nextChunk = lastCartId -> cartIds.stream()
+                    .filter(cartId -> cartId > lastCartId)
+                    .limit(chunkSize)
+                    .toList();
+            progress = new CartPurgeProgress(cartIds.size() + " cart ids");
+        } else {
+            Instant updatedBefore = Instant.now().minus(Duration.ofDays(cartPurgeRequest.getOlderThanDays()));
+            nextChunk = lastCartId -> cartRepository.findIdsUpdatedBefore(updatedBefore, lastCartId, PageRequest.of(0, chunkSize));
+            progress = new CartPurgeProgress("not updated since " + updatedBefore);
+        }
+
+        if (!running.compareAndSet(null, progress)) {
+            return Mono.error(new IllegalStateException("Cart purge " + running.get().getJobId() + " is still running"));
+        }
+        jobs.put(progress.getJobId(), progress);
+
+        Mono.defer(() -> jdbcExecutor.write(() -> purgeChunk(progress, nextChunk)))
+                .delayElement(pause)
+                .repeat(() -> !progress.isExhausted())
+                .doFinally(signal -> running.set(null))
+                .subscribe(null,
+                        throwable -> {
+                            log.error("Cart purge {} failed: {}", progress.getJobId(), throwable.getMessage());
+                            progress.failed(throwable);
+                        },
+                        () -> {
+                            log.info("Cart purge {} deleted {} carts and {} orders", progress.getJobId(),
+                                    progress.getCartsDeleted(), progress.getOrdersDeleted());
+                            progress.completed();
+                        });
+        return Mono.just(progress);
+    }
+
+    @Override
+    public Mono<CartPurgeProgress> findByJobId(final String jobId) {
+        log.info("CartPurgeProgress, service; fetch cart purge by job id");
+        return Mono.justOrEmpty(jobs.getIfPresent(jobId))
+                .switchIfEmpty(Mono.error(new CartNotFoundException("Cart purge with id " + jobId + " not found")));
+    }
+
+    private CartPurgeProgress purgeChunk(CartPurgeProgress progress, IntFunction<List<Integer>> nextChunk) {
+        List<Integer> cartIds = nextChunk.apply(progress.getLastCartId());
+        if (cartIds.isEmpty()) {
+            progress.exhausted();
+            return progress;
+        }
+        List<OrderView> orderViews = orderRepository.findViewsByCartIdInForUpdate(cartIds);
+        orderAggregateService.apply(orderViews, List.of());
+        // consumers of the order topic must see the purged orders go, as with a single delete
+        orderViews.stream()
+                .map(OrderView::orderId)
+                .distinct()
+                .forEach(orderId -> orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, orderId,
+                        KafkaConstant.ORDER_DELETED, Map.of("orderId", orderId)));
+        int orders = orderRepository.deleteAllByCartIdIn(cartIds);
+        int carts = cartRepository.deleteAllByCartIdIn(cartIds);
+        progress.chunkPurged(cartIds.get(cartIds.size() - 1), carts, orders, cartIds.size() < chunkSize);
+        return progress;
+    }
+}
@@ -1,14 +1,29 @@
 package com.hoangtien2k3.orderservice.service.impl;
 
+import com.hoangtien2k3.commonlib.client.EnrichmentExecutor;
+import com.hoangtien2k3.commonlib.helper.CursorHelper;
+import com.hoangtien2k3.commonlib.helper.ETagHelper;
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
+import com.hoangtien2k3.orderservice.constrant.KafkaConstant;
 import com.hoangtien2k3.orderservice.dto.order.CartDto;
+import com.hoangtien2k3.orderservice.dto.user.UserDto;
 import com.hoangtien2k3.orderservice.entity.Cart;
+import com.hoangtien2k3.orderservice.entity.Order;
 import com.hoangtien2k3.orderservice.exception.wrapper.CartNotFoundException;
 import com.hoangtien2k3.orderservice.helper.CartMappingHelper;
+import com.hoangtien2k3.orderservice.helper.OrderMappingHelper;
 import com.hoangtien2k3.orderservice.repository.CartRepository;
 import com.hoangtien2k3.orderservice.repository.OrderRepository;
+import com.hoangtien2k3.orderservice.repository.projection.CartView;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
 import com.hoangtien2k3.orderservice.security.JwtTokenFilter;
-import com.hoangtien2k3.orderservice.service.CartService;
 import com.hoangtien2k3.orderservice.service.CallAPI;
+import com.hoangtien2k3.orderservice.service.CartService;
+import com.hoangtien2k3.orderservice.service.JdbcExecutor;
+import com.hoangtien2k3.orderservice.service.OrderAggregateService;
+import com.hoangtien2k3.orderservice.service.OrderEventOutbox;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
@@ -19,7 +34,17 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Transactional
 @Slf4j
@@ -27,6 +52,9 @@ import java.util.List;
 @Service
 public class CartServiceImpl implements CartService {
 
+    private static final String SORT_BY_CART_ID = "cartId";
+    private static final int USER_LOOKUP_CHUNK_SIZE = 500;
+
     @Autowired
     private final CartRepository cartRepository;
 
@@ -42,68 +70,95 @@ public class CartServiceImpl implements CartService {
     @Autowired
     private final CallAPI callAPI;
 
+    @Autowired
+    private final JdbcExecutor jdbcExecutor;
+
+    @Autowired
+    private final EnrichmentExecutor enrichmentExecutor;
+
+    @Autowired
+    private final OrderEventOutbox orderEventOutbox;
+
+    @Autowired
+    private final OrderAggregateService orderAggregateService;
+
+    private final Cache<String, Long> totalElementsCache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
 
     @Override
     public Mono<List<CartDto>> findAll() {
         log.info("CartDto List, service; fetch all carts");
+        // read on the request thread, the pipeline below continues on the jdbc scheduler
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
 
-        return Mono.fromSupplier(() -> cartRepository.findAll()
-                        .stream()
-                        .map(CartMappingHelper::map)
-                        .toList()
-                )
-                .flatMap(cartDtos -> Flux.fromIterable(cartDtos)
-                        .flatMap(cartDto ->
-                                callAPI.receiverUserDto(cartDto.getUserDto().getId(), JwtTokenFilter.getTokenFromRequest())
-                                        .map(userDto -> {
-                                            cartDto.setUserDto(userDto);
-                                            return cartDto;
-                                        })
-                                        .onErrorResume(throwable -> {
-                                            log.error("Error fetching user info: {}", throwable.getMessage());
-                                            return Mono.just(cartDto);
-                                        })
-                        ).collectList()
-                );
+        return jdbcExecutor.read(() -> mapCartViews(cartRepository.findAllViews(), orderRepository.findAllViews()))
+                .flatMap(cartDtos -> enrichWithUsers(cartDtos, token, deadline));
     }
 
     @Override
     public Mono<Page<CartDto>> findAll(int page, int size, String sortBy, String sortOrder) {
         log.info("CartDto List, service; fetch all carts with paging and sorting");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
         Sort sort = Sort.by(Sort.Direction.fromString(sortOrder), sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        return Mono.fromSupplier(() -> cartRepository
-                        .findAll(pageable)
-                        .map(CartMappingHelper::map)
-                )
-                .flatMap(cartDtos -> Flux.fromIterable(cartDtos)
-                        .flatMap(cartDto ->
-                                callAPI.receiverUserDto(cartDto.getUserDto().getId(), JwtTokenFilter.getTokenFromRequest())
-                                        .map(userDto -> {
-                                            cartDto.setUserDto(userDto);
-                                            return cartDto;
-                                        })
-                                        .onErrorResume(throwable -> {
-                                            log.error("Error fetching user info: {}", throwable.getMessage());
-                                            return Mono.just(cartDto);
-                                        })
-                        )
-                        .collectList()
-                        .map(resultList -> new PageImpl<>(resultList, pageable, resultList.size()))
+        return jdbcExecutor.read(() -> {
+                    Page<CartView> cartViews = cartRepository.findAllViews(pageable);
+                    return new PageImpl<>(mapCartViews(cartViews.getContent()), pageable, cartViews.getTotalElements());
+                })
+                .flatMap(cartPage -> enrichWithUsers(cartPage.getContent(), token, deadline)
+                        .map(resultList -> new PageImpl<>(resultList, pageable, cartPage.getTotalElements()))
                 );
     }
 
+    @Override
+    public Mono<CursorPageResponse<CartDto>> findAll(String cursor, int size, boolean withTotal) {
+        log.info("CartDto List, service; fetch carts with keyset pagination");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
+        CursorHelper.Cursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : CursorHelper.decode(cursor, SORT_BY_CART_ID);
+        } catch (IllegalStateException e) {
+            return Mono.error(e);
+        }
+        int limit = CursorHelper.limit(size);
+        Pageable pageable = PageRequest.of(0, limit);
+
+        Mono<Optional<Long>> totalElements = withTotal
+                ? jdbcExecutor.read(() -> Optional.of(totalElementsCache.get("carts", key -> cartRepository.count())))
+                : Mono.just(Optional.empty());
+
+        return jdbcExecutor.read(() -> mapCartViews(after == null
+                        ? cartRepository.findFirstPageByCartId(pageable)
+                        : cartRepository.findNextPageByCartId(after.id(), pageable)))
+                .flatMap(cartDtos -> enrichWithUsers(cartDtos, token, deadline))
+                .zipWith(totalElements, (cartDtos, total) -> CursorPageResponse.<CartDto>builder()
+                        .collection(cartDtos)
+                        .nextCursor(cartDtos.size() == limit
+                                ? CursorHelper.encode(SORT_BY_CART_ID, cartDtos.get(limit - 1).getCartId(), cartDtos.get(limit - 1).getCartId())
+                                : null)
+                        .totalElements(total.orElse(null))
+                        .build());
+    }
+
     @Override
     public Mono<CartDto> findById(Integer cartId) {
         log.info("CartDto, service; fetch cart by id");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
 
-        return Mono.fromSupplier(() -> cartRepository.findById(cartId)
-                        .map(CartMappingHelper::map)
+        return jdbcExecutor.read(() -> cartRepository.findViewById(cartId)
+                        .map(cartView -> CartMappingHelper.map(cartView, orderRepository.findViewsByCartIdIn(List.of(cartId))))
                         .orElseThrow(() -> new CartNotFoundException(String.format("Cart with id: %d not found", cartId)))
                 )
                 .flatMap(cartDto ->
-                        callAPI.receiverUserDto(cartDto.getUserDto().getId(), JwtTokenFilter.getTokenFromRequest())
+                        enrichmentExecutor.call(EnrichmentExecutor.USER_SERVICE,
+                                        () -> callAPI.receiverUserDto(cartDto.getUserDto().getId(), token),
+                                        deadline)
                                 .map(userDto -> {
                                     cartDto.setUserDto(userDto);
                                     return cartDto;
@@ -115,18 +170,120 @@ public class CartServiceImpl implements CartService {
                 );
     }
 
+    // carts and their orders are read as projections in two statements, no entity is loaded
+    private List<CartDto> mapCartViews(List<CartView> cartViews) {
+        if (cartViews.isEmpty()) {
+            return List.of();
+        }
+        return mapCartViews(cartViews, orderRepository.findViewsByCartIdIn(cartViews.stream()
+                .map(CartView::cartId)
+                .toList()));
+    }
+
+    private List<CartDto> mapCartViews(List<CartView> cartViews, List<OrderView> orderViews) {
+        Map<Integer, List<OrderView>> orderViewsByCartId = orderViews.stream()
+                .filter(orderView -> orderView.cartId() != null)
+                .collect(Collectors.groupingBy(OrderView::cartId));
+        return cartViews.stream()
+                .map(cartView -> CartMappingHelper.map(cartView, orderViewsByCartId.getOrDefault(cartView.cartId(), List.of())))
+                .toList();
+    }
+
+    // one by-ids request per chunk of user ids, a failed chunk leaves its carts unenriched
+    private Mono<List<CartDto>> enrichWithUsers(List<CartDto> cartDtos, String token, Instant deadline) {
+        List<Long> userIds = cartDtos.stream()
+                .map(CartDto::getUserDto)
+                .filter(Objects::nonNull)
+                .map(UserDto::getId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (userIds.isEmpty()) {
+            return Mono.just(cartDtos);
+        }
+        return Flux.fromIterable(chunks(userIds, USER_LOOKUP_CHUNK_SIZE))
+                .flatMap(chunk -> enrichmentExecutor.call(EnrichmentExecutor.USER_SERVICE,
+                                        () -> callAPI.receiverUserDtos(chunk, token),
+                                        deadline)
+                                .onErrorResume(throwable -> {
+                                    log.error("Error fetching user info: {}", throwable.getMessage());
+                                    return Mono.just(Map.of());
+                                }),
+                        enrichmentExecutor.concurrency(EnrichmentExecutor.USER_SERVICE))
+                .flatMapIterable(Map::values)
+                .collectMap(UserDto::getId)
+                .map(usersById -> {
+                    cartDtos.stream()
+                            .filter(cartDto -> cartDto.getUserDto() != null)
+                            .forEach(cartDto -> Optional.ofNullable(usersById.get(cartDto.getUserDto().getId()))
+                                    .ifPresent(cartDto::setUserDto));
+                    return cartDtos;
+                });
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> values, int chunkSize) {
+        List<T> ids = List.copyOf(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
+    @Override
+    public Mono<String> findETag(Integer cartId) {
+        return jdbcExecutor.read(() -> cartRepository.findVersionById(cartId)
+                .map(version -> ETagHelper.of(cartId, version.updatedAt(), version.ordersUpdatedAt(), version.orderCount()))
+                .orElse(null));
+    }
+
     @Override
     public Mono<CartDto> save(final CartDto cartDto) {
         log.info("CartDto, service; save cart");
-        return Mono.fromSupplier(() -> cartRepository.save(modelMapper.map(cartDto, Cart.class)))
-                .map(savedCart -> modelMapper.map(savedCart, CartDto.class));
+        return jdbcExecutor.write(() -> {
+            CartDto savedCartDto = modelMapper.map(cartRepository.save(modelMapper.map(cartDto, Cart.class)), CartDto.class);
+            orderEventOutbox.append(KafkaConstant.AGGREGATE_CART, savedCartDto.getCartId(), KafkaConstant.CART_CREATED, savedCartDto);
+            return savedCartDto;
+        });
+    }
+
+    @Override
+    public Mono<CartDto> checkout(final CartDto cartDto) {
+        log.info("CartDto, service; checkout cart with order lines");
+        if (cartDto.getOrderDtos() == null || cartDto.getOrderDtos().isEmpty()) {
+            return Mono.error(new IllegalStateException("Checkout requires at least one order line"));
+        }
+
+        // cart and all order lines are written in one transaction; with pooled ids the
+        // order inserts go out as a single JDBC batch instead of one round trip per line
+        return jdbcExecutor.write(() -> {
+            Cart cart = cartRepository.save(Cart.builder()
+                    .userId(cartDto.getUserId())
+                    .build());
+            List<Order> orders = orderRepository.saveAll(cartDto.getOrderDtos()
+                    .stream()
+                    .map(orderDto -> Order.builder()
+                            .orderDate(orderDto.getOrderDate() != null ? orderDto.getOrderDate() : LocalDateTime.now())
+                            .orderDesc(orderDto.getOrderDesc())
+                            .orderFee(orderDto.getOrderFee())
+                            .productId(orderDto.getProductId())
+                            .cart(cart)
+                            .build())
+                    .toList());
+            cart.setOrders(new HashSet<>(orders));
+            orderAggregateService.apply(List.of(), orderRepository.findViewsByCartIdIn(List.of(cart.getCartId())));
+            orders.forEach(order -> orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, order.getOrderId(),
+                    KafkaConstant.ORDER_CREATED, OrderMappingHelper.map(order)));
+            CartDto savedCartDto = CartMappingHelper.map(cart);
+            orderEventOutbox.append(KafkaConstant.AGGREGATE_CART, cart.getCartId(), KafkaConstant.CART_CREATED, savedCartDto);
+            return savedCartDto;
+        });
     }
 
     @Override
     public Mono<CartDto> update(final CartDto cartDto) {
         log.info("CartDto, service; update cart");
-        return Mono.fromSupplier(() -> cartRepository.save(CartMappingHelper.map(cartDto)))
-                .map(CartMappingHelper::map);
+        return jdbcExecutor.write(() -> CartMappingHelper.map(cartRepository.save(CartMappingHelper.map(cartDto))));
     }
 
     @Override
@@ -134,8 +291,7 @@ public class CartServiceImpl implements CartService {
         log.info("CartDto, service; update cart with cartId");
         return findById(cartId).flatMap(existingCartDto -> {
                     modelMapper.map(cartDto, existingCartDto);
-                    return Mono.fromSupplier(() -> cartRepository.save(CartMappingHelper.map(existingCartDto)))
-                            .map(CartMappingHelper::map);
+                    return jdbcExecutor.write(() -> CartMappingHelper.map(cartRepository.save(CartMappingHelper.map(existingCartDto))));
                 })
                 .switchIfEmpty(Mono.error(new CartNotFoundException("Cart with id " + cartId + " not found")));
     }
@@ -143,12 +299,17 @@ public class CartServiceImpl implements CartService {
     @Override
     public Mono<Void> deleteById(final Integer cartId) {
         log.info("Void, service; delete cart by id");
-        cartRepository.findById(cartId)
-                .ifPresent(cart -> {
-                    orderRepository.deleteAllByCart(cart);
-                    cartRepository.deleteById(cartId);
-                });
-        return Mono.empty();
+        return jdbcExecutor.write(() -> {
+            List<OrderView> orderViews = orderRepository.findViewsByCartIdInForUpdate(List.of(cartId));
+            orderAggregateService.apply(orderViews, List.of());
+            orderViews.stream()
+                    .map(OrderView::orderId)
+                    .distinct()
+                    .forEach(orderId -> orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, orderId,
+                            KafkaConstant.ORDER_DELETED, Map.of("orderId", orderId)));
+            orderRepository.deleteAllByCartIdIn(List.of(cartId));
+            cartRepository.deleteAllByCartIdIn(List.of(cartId));
+        });
     }
 
 }
@@ -0,0 +1,185 @@
+package com.hoangtien2k3.orderservice.service.impl;
+
+import com.hoangtien2k3.orderservice.dto.order.OrderAggregateDto;
+import com.hoangtien2k3.orderservice.entity.OrderRollup;
+import com.hoangtien2k3.orderservice.repository.OrderRollupRepository;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
+import com.hoangtien2k3.orderservice.service.JdbcExecutor;
+import com.hoangtien2k3.orderservice.service.OrderAggregateService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps per-day, per-product and per-user order counters in the order_rollups table and serves
+ * them from memory. Writes apply deltas in the order's transaction; after commit the touched rows
+ * are read back and replace their entries in memory, and the whole table is reloaded periodically
+ * to pick up changes made by other instances. Memory only ever holds values read from the table,
+ * so a reload racing with a write can at worst show a value one write old until the next refresh
+ * of that key, it never counts a delta twice.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class OrderAggregateServiceImpl implements OrderAggregateService {
+
+    @Autowired
+    private final OrderRollupRepository orderRollupRepository;
+
+    @Autowired
+    private final JdbcExecutor jdbcExecutor;
+
+    @Autowired
+    private final PlatformTransactionManager transactionManager;
+
+    private volatile Map<OrderRollup.Dimension, Map<String, OrderAggregateDto>> rollups = emptyRollups();
+
+    @Override
+    public Mono<List<OrderAggregateDto>> findAll(final OrderRollup.Dimension dimension) {
+        log.info("OrderAggregateDto List, service; fetch order aggregates by dimension");
+        return Mono.just(rollups.get(dimension).values()
+                .stream()
+                .sorted(Comparator.comparing(OrderAggregateDto::getKey))
+                .toList());
+    }
+
+    @Override
+    public Mono<OrderAggregateDto> findByKey(final OrderRollup.Dimension dimension, final String key) {
+        log.info("OrderAggregateDto, service; fetch order aggregate by key");
+        return Mono.just(rollups.get(dimension).getOrDefault(key, OrderAggregateDto.builder()
+                .dimension(dimension)
+                .key(key)
+                .orderCount(0L)
+                .feeSum(BigDecimal.ZERO)
+                .build()));
+    }
+
+    @Override
+    public Mono<Integer> rebuild() {
+        log.info("Integer, service; rebuild order aggregates");
+        return jdbcExecutor.write(() -> {
+                    orderRollupRepository.deleteAllRollups();
+                    return orderRollupRepository.rebuildByDay()
+                            + orderRollupRepository.rebuildByProduct()
+                            + orderRollupRepository.rebuildByUser();
+                })
+                .flatMap(rows -> jdbcExecutor.read(() -> {
+                    reload();
+                    return rows;
+                }));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(final Collection<OrderView> before, final Collection<OrderView> after) {
+        Map<OrderRollup.OrderRollupId, OrderAggregateDto> deltas = new HashMap<>();
+        before.forEach(orderView -> addDelta(deltas, orderView, -1));
+        after.forEach(orderView -> addDelta(deltas, orderView, 1));
+        deltas.values().removeIf(delta -> delta.getOrderCount() == 0 && delta.getFeeSum().signum() == 0);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        deltas.values().forEach(delta -> orderRollupRepository.increment(
+                delta.getDimension().name(), delta.getKey(), delta.getOrderCount(), delta.getFeeSum()));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshInMemory(deltas.keySet());
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${order.aggregates.refresh-interval-ms:60000}",
+            initialDelayString = "${order.aggregates.refresh-interval-ms:60000}")
+    @Transactional(readOnly = true)
+    public void reload() {
+        Map<OrderRollup.Dimension, Map<String, OrderAggregateDto>> loaded = emptyRollups();
+        orderRollupRepository.findAll().forEach(rollup -> loaded.get(rollup.getDimension()).put(rollup.getDimKey(), map(rollup)));
+        rollups = loaded;
+    }
+
+    // the writing transaction has committed, so the rows are read in a transaction of their own
+    private void refreshInMemory(Collection<OrderRollup.OrderRollupId> ids) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readOnly.setReadOnly(true);
+        try {
+            List<OrderRollup> refreshed = readOnly.execute(status -> orderRollupRepository.findAllById(ids));
+            Map<OrderRollup.Dimension, Map<String, OrderAggregateDto>> current = rollups;
+            refreshed.forEach(rollup -> current.get(rollup.getDimension()).put(rollup.getDimKey(), map(rollup)));
+        } catch (RuntimeException e) {
+            // memory stays behind until the next reload, the table is already correct
+            log.error("Could not refresh order aggregates after commit: {}", e.getMessage());
+        }
+    }
+
+    private static OrderAggregateDto map(OrderRollup rollup) {
+        return OrderAggregateDto.builder()
+                .dimension(rollup.getDimension())
+                .key(rollup.getDimKey())
+                .orderCount(rollup.getOrderCount())
+                .feeSum(rollup.getFeeSum())
+                .build();
+    }
+
+    private static void addDelta(Map<OrderRollup.OrderRollupId, OrderAggregateDto> deltas, OrderView orderView, int sign) {
+        BigDecimal fee = orderView.orderFee() == null ? BigDecimal.ZERO : BigDecimal.valueOf(orderView.orderFee());
+        if (orderView.orderDate() != null) {
+            addDelta(deltas, OrderRollup.Dimension.DAY, orderView.orderDate().toLocalDate().toString(), sign, fee);
+        }
+        if (orderView.productId() != null) {
+            addDelta(deltas, OrderRollup.Dimension.PRODUCT, orderView.productId().toString(), sign, fee);
+        }
+        if (orderView.userId() != null) {
+            addDelta(deltas, OrderRollup.Dimension.USER, orderView.userId().toString(), sign, fee);
+        }
+    }
+
+    private static void addDelta(Map<OrderRollup.OrderRollupId, OrderAggregateDto> deltas,
+                                 OrderRollup.Dimension dimension, String key, int sign, BigDecimal fee) {
+        deltas.merge(new OrderRollup.OrderRollupId(dimension, key),
+                OrderAggregateDto.builder()
+                        .dimension(dimension)
+                        .key(key)
+                        .orderCount((long) sign)
+                        .feeSum(sign < 0 ? fee.negate() : fee)
+                        .build(),
+                (current, change) -> OrderAggregateDto.builder()
+                        .dimension(dimension)
+                        .key(key)
+                        .orderCount(current.getOrderCount() + change.getOrderCount())
+                        .feeSum(current.getFeeSum().add(change.getFeeSum()))
+                        .build());
+    }
+
+    private static Map<OrderRollup.Dimension, Map<String, OrderAggregateDto>> emptyRollups() {
+        Map<OrderRollup.Dimension, Map<String, OrderAggregateDto>> empty = new EnumMap<>(OrderRollup.Dimension.class);
+        for (OrderRollup.Dimension dimension : OrderRollup.Dimension.values()) {
+            empty.put(dimension, new ConcurrentHashMap<>());
+        }
+        return empty;
+    }
+}
@@ -1,26 +1,58 @@
 package com.hoangtien2k3.orderservice.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hoangtien2k3.commonlib.client.EnrichmentExecutor;
+import com.hoangtien2k3.commonlib.helper.CursorHelper;
+import com.hoangtien2k3.commonlib.helper.ETagHelper;
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
+import com.hoangtien2k3.orderservice.constrant.ExportFormat;
+import com.hoangtien2k3.orderservice.constrant.KafkaConstant;
 import com.hoangtien2k3.orderservice.dto.order.OrderDto;
-import com.hoangtien2k3.orderservice.entity.Order;
+import com.hoangtien2k3.orderservice.dto.product.ProductDto;
 import com.hoangtien2k3.orderservice.exception.wrapper.CartNotFoundException;
 import com.hoangtien2k3.orderservice.exception.wrapper.OrderNotFoundException;
 import com.hoangtien2k3.orderservice.helper.OrderMappingHelper;
 import com.hoangtien2k3.orderservice.repository.OrderRepository;
+import com.hoangtien2k3.orderservice.repository.projection.OrderView;
 import com.hoangtien2k3.orderservice.security.JwtTokenFilter;
 import com.hoangtien2k3.orderservice.service.CallAPI;
+import com.hoangtien2k3.orderservice.service.JdbcExecutor;
+import com.hoangtien2k3.orderservice.service.OrderAggregateService;
+import com.hoangtien2k3.orderservice.service.OrderEventOutbox;
 import com.hoangtien2k3.orderservice.service.OrderService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.transaction.Transactional;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Transactional
 @Slf4j
@@ -28,6 +60,13 @@ import java.util.Optional;
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    private static final String SORT_BY_ORDER_ID = "orderId";
+    private static final String SORT_BY_ORDER_DATE = "orderDate";
+
+    private static final int EXPORT_BATCH_SIZE = 500;
+    private static final String CSV_HEADER =
+            "order_id,order_date,order_desc,order_fee,cart_id,user_id,product_id,product_title,sku,price_unit\n";
+
     @Autowired
     private final OrderRepository orderRepository;
 
@@ -37,58 +76,104 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private final CallAPI callAPI;
 
+    @Autowired
+    private final JdbcExecutor jdbcExecutor;
+
+    @Autowired
+    private final EnrichmentExecutor enrichmentExecutor;
+
+    @Autowired
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    private final OrderEventOutbox orderEventOutbox;
+
+    @Autowired
+    private final OrderAggregateService orderAggregateService;
+
+    // COUNT(*) is a full scan, so the optional total is only refreshed every few seconds.
+    private final Cache<String, Long> totalElementsCache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
+
     @Override
     public Mono<List<OrderDto>> findAll() {
         log.info("OrderDto List, service; fetch all orders");
-        return Mono.fromSupplier(() -> orderRepository.findAll()
+        Instant deadline = enrichmentExecutor.deadline();
+        return jdbcExecutor.read(() -> orderRepository.findAllViews()
                         .stream()
                         .map(OrderMappingHelper::map)
                         .toList())
-                .flatMap(listOrderDtos -> Flux.fromIterable(listOrderDtos)
-                        .flatMap(orderDto ->
-                                callAPI.receiverProductDto(orderDto.getProductId())
-                                        .map(productDto -> {
-                                            orderDto.setProductDto(productDto);
-                                            return orderDto;
-                                        })
-                                        .onErrorResume(throwable -> {
-                                            log.error("Error fetching product info: {}", throwable.getMessage());
-                                            return Mono.just(orderDto);
-                                        })
-                        ).collectList()
-                );
+                .flatMap(orderDtos -> enrichWithProducts(orderDtos, deadline));
     }
 
     @Override
     public Mono<Page<OrderDto>> findAll(int page, int size, String sortBy, String sortOrder) {
         log.info("OrderDto List, service; fetch all carts with paging and sorting");
+        Instant deadline = enrichmentExecutor.deadline();
         Sort sort = Sort.by(Sort.Direction.fromString(sortOrder), sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        return Mono.fromSupplier(() -> orderRepository.findAll(pageable)
-                        .map(OrderMappingHelper::map)
-                )
-                .flatMap(orderDtos -> Flux.fromIterable(orderDtos)
-                        .flatMap(productDtos ->
-                                callAPI.receiverProductDto(productDtos.getProductId())
-                                        .map(productDto -> {
-                                            productDtos.setProductDto(productDto);
-                                            return productDtos;
-                                        })
-                                        .onErrorResume(throwable -> {
-                                            log.error("Error fetching product info: {}", throwable.getMessage());
-                                            return Mono.just(productDtos);
-                                        })
-                        )
-                        .collectList()
-                        .map(resultList -> new PageImpl<>(resultList, pageable, resultList.size()))
-                );
+        return jdbcExecutor.read(() -> orderRepository.findAllViews(pageable).map(OrderMappingHelper::map))
+                .flatMap(orderPage -> enrichWithProducts(orderPage.getContent(), deadline)
+                        .map(resultList -> new PageImpl<>(resultList, pageable, orderPage.getTotalElements())));
+    }
+
+    @Override
+    public Mono<CursorPageResponse<OrderDto>> findAll(String cursor, int size, String sortBy, boolean withTotal) {
+        log.info("OrderDto List, service; fetch orders with keyset pagination");
+        if (!SORT_BY_ORDER_ID.equals(sortBy) && !SORT_BY_ORDER_DATE.equals(sortBy)) {
+            return Mono.error(new IllegalStateException("Unsupported sort for cursor pagination: " + sortBy));
+        }
+        CursorHelper.Cursor after;
+        LocalDateTime afterOrderDate;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : CursorHelper.decode(cursor, sortBy);
+            afterOrderDate = after != null && SORT_BY_ORDER_DATE.equals(sortBy) ? LocalDateTime.parse(after.sortKey()) : null;
+        } catch (IllegalStateException | DateTimeParseException e) {
+            return Mono.error(new IllegalStateException("Invalid cursor", e));
+        }
+        int limit = CursorHelper.limit(size);
+        Pageable pageable = PageRequest.of(0, limit);
+        Instant deadline = enrichmentExecutor.deadline();
+
+        Mono<Optional<Long>> totalElements = withTotal
+                ? jdbcExecutor.read(() -> Optional.of(totalElementsCache.get("orders", key -> orderRepository.count())))
+                : Mono.just(Optional.empty());
+
+        return jdbcExecutor.read(() -> {
+                    List<OrderView> orders;
+                    if (afterOrderDate != null) {
+                        orders = orderRepository.findNextPageByOrderDate(afterOrderDate, after.id(), pageable);
+                    } else if (after != null) {
+                        orders = orderRepository.findNextPageByOrderId(after.id(), pageable);
+                    } else if (SORT_BY_ORDER_DATE.equals(sortBy)) {
+                        orders = orderRepository.findFirstPageByOrderDate(pageable);
+                    } else {
+                        orders = orderRepository.findFirstPageByOrderId(pageable);
+                    }
+                    return orders.stream().map(OrderMappingHelper::map).toList();
+                })
+                .flatMap(orderDtos -> enrichWithProducts(orderDtos, deadline))
+                .zipWith(totalElements, (orderDtos, total) -> {
+                    String nextCursor = null;
+                    if (orderDtos.size() == limit) {
+                        OrderDto last = orderDtos.get(orderDtos.size() - 1);
+                        Object sortKey = SORT_BY_ORDER_DATE.equals(sortBy) ? last.getOrderDate() : last.getOrderId();
+                        nextCursor = CursorHelper.encode(sortBy, sortKey, last.getOrderId());
+                    }
+                    return CursorPageResponse.<OrderDto>builder()
+                            .collection(orderDtos)
+                            .nextCursor(nextCursor)
+                            .totalElements(total.orElse(null))
+                            .build();
+                });
     }
 
     @Override
     public Mono<OrderDto> findById(Integer orderId) {
         log.info("OrderDto, service; fetch order by id");
-        return Mono.fromSupplier(() -> orderRepository.findById(orderId)
+        return jdbcExecutor.read(() -> orderRepository.findViewById(orderId)
                         .map(OrderMappingHelper::map)
                         .orElseThrow(() -> new OrderNotFoundException(String.format("Order with id: %d not found", orderId)))
                 )
@@ -105,16 +190,160 @@ public class OrderServiceImpl implements OrderService {
                 );
     }
 
+    // ids that do not exist are skipped, so callers get back at most one order per requested id
+    @Override
+    public Mono<List<OrderDto>> findAllByIds(Collection<Integer> orderIds) {
+        log.info("OrderDto List, service; fetch orders by ids");
+        Set<Integer> distinctIds = new HashSet<>(orderIds);
+        if (distinctIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        if (distinctIds.size() > CursorHelper.MAX_PAGE_SIZE) {
+            return Mono.error(new IllegalStateException("At most " + CursorHelper.MAX_PAGE_SIZE + " order ids can be fetched at once"));
+        }
+        Instant deadline = enrichmentExecutor.deadline();
+        return jdbcExecutor.read(() -> orderRepository.findViewsByOrderIdIn(distinctIds)
+                        .stream()
+                        .map(OrderMappingHelper::map)
+                        .toList())
+                .flatMap(orderDtos -> enrichWithProducts(orderDtos, deadline));
+    }
+
+    @Override
+    public Mono<String> findETag(Integer orderId) {
+        return jdbcExecutor.read(() -> orderRepository.findVersionById(orderId)
+                .map(updatedAt -> ETagHelper.of(orderId, updatedAt))
+                .orElse(null));
+    }
+
+    // rows are read through a database cursor as projections and written out batch by batch,
+    // so memory does not grow with the size of the table.
+    @Override
+    public void exportAll(ExportFormat format, OutputStream outputStream) throws IOException {
+        log.info("Void, service; export all orders as {}", format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+        }
+
+        List<OrderDto> batch = new ArrayList<>(EXPORT_BATCH_SIZE);
+        try (Stream<OrderView> orders = orderRepository.streamAll()) {
+            Iterator<OrderView> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                batch.add(OrderMappingHelper.map(iterator.next()));
+                if (batch.size() == EXPORT_BATCH_SIZE) {
+                    writeBatch(format, batch, writer);
+                }
+            }
+        }
+        writeBatch(format, batch, writer);
+    }
+
+    private void writeBatch(ExportFormat format, List<OrderDto> batch, Writer writer) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<OrderDto> orderDtos = enrichBatch(batch);
+        for (OrderDto orderDto : orderDtos) {
+            if (format == ExportFormat.CSV) {
+                ProductDto productDto = Optional.ofNullable(orderDto.getProductDto()).orElseGet(ProductDto::new);
+                writer.write(String.join(",",
+                        csv(orderDto.getOrderId()),
+                        csv(orderDto.getOrderDate()),
+                        csv(orderDto.getOrderDesc()),
+                        csv(orderDto.getOrderFee()),
+                        csv(orderDto.getCartDto().getCartId()),
+                        csv(orderDto.getCartDto().getUserId()),
+                        csv(orderDto.getProductId()),
+                        csv(productDto.getProductTitle()),
+                        csv(productDto.getSku()),
+                        csv(productDto.getPriceUnit())));
+            } else {
+                writer.write(objectMapper.writeValueAsString(orderDto));
+            }
+            writer.write('\n');
+        }
+        // a blocking write here is the backpressure: the cursor is not advanced until the client reads
+        writer.flush();
+        batch.clear();
+    }
+
+    // the export holds a servlet thread, so the wait is bounded by the enrichment deadline; a shed,
+    // failed or late product lookup writes the batch unenriched instead of aborting the download
+    private List<OrderDto> enrichBatch(List<OrderDto> batch) {
+        Instant deadline = enrichmentExecutor.deadline();
+        try {
+            return Optional.ofNullable(enrichWithProducts(batch, deadline)
+                            .block(Duration.between(Instant.now(), deadline)))
+                    .orElse(batch);
+        } catch (RuntimeException e) {
+            log.error("Error fetching product info for export batch: {}", e.getMessage());
+            return batch;
+        }
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    // fetch the distinct products of a batch of orders in one call and join them back in memory.
+    private Mono<List<OrderDto>> enrichWithProducts(List<OrderDto> orderDtos, Instant deadline) {
+        List<Integer> productIds = orderDtos.stream()
+                .map(OrderDto::getProductId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (productIds.isEmpty()) {
+            return Mono.just(orderDtos);
+        }
+
+        return enrichmentExecutor.call(EnrichmentExecutor.PRODUCT_SERVICE,
+                        () -> callAPI.receiverProductDtos(productIds),
+                        deadline)
+                .map(productDtos -> {
+                    Map<Integer, ProductDto> productsById = productDtos.stream()
+                            .collect(Collectors.toMap(ProductDto::getProductId, Function.identity(), (a, b) -> a));
+                    orderDtos.forEach(orderDto -> orderDto.setProductDto(productsById.get(orderDto.getProductId())));
+                    return orderDtos;
+                })
+                .onErrorResume(throwable -> {
+                    log.error("Error fetching product info: {}", throwable.getMessage());
+                    return Mono.just(orderDtos);
+                });
+    }
+
+    // after image of an order for the aggregates, read in the writing transaction
+    private List<OrderView> findViews(Integer orderId) {
+        return orderId == null ? List.of() : orderRepository.findViewById(orderId).stream().toList();
+    }
+
+    // before image, read with a row lock that is held until the writing transaction commits
+    private List<OrderView> findViewsForUpdate(Integer orderId) {
+        return orderId == null ? List.of() : orderRepository.findViewForUpdate(orderId).stream().toList();
+    }
+
     // check orderId in exist in database.
     @Override
     public Boolean existsByOrderId(Integer orderId) {
-         return orderRepository.findById(orderId).isPresent();
+        return orderRepository.existsById(orderId);
     }
 
     @Override
     public Mono<OrderDto> save(final OrderDto orderDto) {
         log.info("OrderDto, service; save order");
-        return Mono.fromSupplier(() -> OrderMappingHelper.map(orderRepository.save(OrderMappingHelper.map(orderDto))))
+        return jdbcExecutor.write(() -> {
+                    OrderDto savedOrderDto = OrderMappingHelper.map(orderRepository.save(OrderMappingHelper.map(orderDto)));
+                    orderAggregateService.apply(List.of(), findViews(savedOrderDto.getOrderId()));
+                    orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, savedOrderDto.getOrderId(), KafkaConstant.ORDER_CREATED, savedOrderDto);
+                    return savedOrderDto;
+                })
                 .onErrorResume(throwable -> {
                     log.error("Error saving order: {}", throwable.getMessage());
                     return Mono.error(throwable);
@@ -124,8 +353,13 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public Mono<OrderDto> update(final OrderDto orderDto) {
         log.info("OrderDto, service; update order");
-        return Mono.fromSupplier(() -> orderRepository.save(OrderMappingHelper.map(orderDto)))
-                .map(OrderMappingHelper::map);
+        return jdbcExecutor.write(() -> {
+            List<OrderView> before = findViewsForUpdate(orderDto.getOrderId());
+            OrderDto updatedOrderDto = OrderMappingHelper.map(orderRepository.save(OrderMappingHelper.map(orderDto)));
+            orderAggregateService.apply(before, findViews(updatedOrderDto.getOrderId()));
+            orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, updatedOrderDto.getOrderId(), KafkaConstant.ORDER_UPDATED, updatedOrderDto);
+            return updatedOrderDto;
+        });
     }
 
     @Override
@@ -133,8 +367,13 @@ public class OrderServiceImpl implements OrderService {
         log.info("OrderDto, service; update order with orderId");
         return findById(orderId).flatMap(existingOrderDto -> {
                     modelMapper.map(orderDto, existingOrderDto);
-                    return Mono.fromSupplier(() -> orderRepository.save(OrderMappingHelper.map(existingOrderDto)))
-                            .map(OrderMappingHelper::map);
+                    return jdbcExecutor.write(() -> {
+                        List<OrderView> before = findViewsForUpdate(orderId);
+                        OrderDto updatedOrderDto = OrderMappingHelper.map(orderRepository.save(OrderMappingHelper.map(existingOrderDto)));
+                        orderAggregateService.apply(before, findViews(updatedOrderDto.getOrderId()));
+                        orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, orderId, KafkaConstant.ORDER_UPDATED, updatedOrderDto);
+                        return updatedOrderDto;
+                    });
                 })
                 .switchIfEmpty(Mono.error(new CartNotFoundException("Cart with id " + orderId + " not found")));
     }
@@ -142,7 +381,11 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public Mono<Void> deleteById(final Integer orderId) {
         log.info("Void, service; delete order by id");
-        return Mono.fromRunnable(() -> orderRepository.deleteById(orderId));
+        return jdbcExecutor.write(() -> {
+            orderAggregateService.apply(findViewsForUpdate(orderId), List.of());
+            orderRepository.deleteById(orderId);
+            orderEventOutbox.append(KafkaConstant.AGGREGATE_ORDER, orderId, KafkaConstant.ORDER_DELETED, Map.of("orderId", orderId));
+        });
     }
 
 }
@@ -2,8 +2,8 @@
 CREATE TABLE carts (
 	cart_id INT(11) NOT NULL PRIMARY KEY AUTO_INCREMENT,
 	user_id INT(11),
-	created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
-	updated_at TIMESTAMP
+	created_at TIMESTAMP(6) DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
+	updated_at TIMESTAMP(6)
 );
 
 -- Chèn dữ liệu vào bảng carts
@@ -20,8 +20,8 @@ CREATE TABLE orders (
 	order_date TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
 	order_desc VARCHAR(255),
 	order_fee DECIMAL(7, 2),
-	created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
-	updated_at TIMESTAMP
+	created_at TIMESTAMP(6) DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
+	updated_at TIMESTAMP(6)
 );
 
 -- Chèn dữ liệu vào bảng orders
@@ -35,3 +35,36 @@ VALUES
 ALTER TABLE orders
 ADD CONSTRAINT fk5_assign FOREIGN KEY (cart_id) REFERENCES carts (cart_id);
 
+-- Keyset pagination by (order_date, order_id)
+CREATE INDEX idx_orders_order_date_id ON orders (order_date, order_id);
+
+
+-- Sequence tables backing the pooled-lo id generators of carts and orders (MySQL has no native sequences)
+CREATE TABLE carts_seq (
+	next_val BIGINT
+);
+INSERT INTO carts_seq SELECT COALESCE(MAX(cart_id), 0) + 1 FROM carts;
+
+CREATE TABLE orders_seq (
+	next_val BIGINT
+);
+INSERT INTO orders_seq SELECT COALESCE(MAX(order_id), 0) + 1 FROM orders;
+
+-- Transactional outbox of order lifecycle events, drained to Kafka by OrderOutboxRelay
+CREATE TABLE order_outbox (
+	id BIGINT NOT NULL PRIMARY KEY AUTO_INCREMENT,
+	aggregate_type VARCHAR(32) NOT NULL,
+	aggregate_id VARCHAR(64) NOT NULL,
+	event_type VARCHAR(64) NOT NULL,
+	payload LONGTEXT NOT NULL,
+	created_at TIMESTAMP NOT NULL
+);
+
+-- Incrementally maintained order rollups per day, product and user
+CREATE TABLE order_rollups (
+	dimension VARCHAR(16) NOT NULL,
+	dim_key VARCHAR(64) NOT NULL,
+	order_count BIGINT NOT NULL,
+	fee_sum DECIMAL(19, 2) NOT NULL,
+	PRIMARY KEY (dimension, dim_key)
+);
@@ -1,8 +1,14 @@
 package com.hoangtien2k3.paymentservice.api;
 
+import com.hoangtien2k3.commonlib.helper.ETagHelper;
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
+import com.hoangtien2k3.paymentservice.constant.AppConstant;
 import com.hoangtien2k3.paymentservice.dto.OrderDto;
 import com.hoangtien2k3.paymentservice.dto.PaymentDto;
+import com.hoangtien2k3.paymentservice.dto.ReconciliationRunDto;
+import com.hoangtien2k3.paymentservice.entity.ReconciliationMismatch;
 import com.hoangtien2k3.paymentservice.http.HeaderGenerator;
+import com.hoangtien2k3.paymentservice.service.PaymentReconciliationService;
 import com.hoangtien2k3.paymentservice.service.PaymentService;
 import com.hoangtien2k3.paymentservice.service.impl.PaymentServiceImpl;
 import io.swagger.annotations.ApiOperation;
@@ -12,6 +18,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -36,6 +43,9 @@ public class PaymentController {
     @Autowired
     private final PaymentServiceImpl paymentServiceImpl;
 
+    @Autowired
+    private final PaymentReconciliationService paymentReconciliationService;
+
     @Autowired
     private final HeaderGenerator headerGenerator;
 
@@ -69,18 +79,36 @@ public class PaymentController {
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
+    @ApiOperation(value = "Get all payments with a cursor", notes = "Retrieve payments after the given cursor using keyset pagination.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Payments retrieved successfully", response = CursorPageResponse.class),
+            @ApiResponse(code = 400, message = "Invalid cursor", response = ResponseEntity.class)
+    })
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<CursorPageResponse<PaymentDto>>> findAll(@RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "10") int size,
+                                                                        @RequestParam(defaultValue = "false") boolean withTotal) {
+        return paymentService.findAll(cursor, size, withTotal)
+                .map(ResponseEntity::ok);
+    }
+
     @ApiOperation(value = "Get payment by ID", notes = "Retrieve cart information based on the provided ID.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Payment retrieved successfully", response = PaymentDto.class),
+            @ApiResponse(code = 304, message = "Payment not modified since the given ETag", response = ResponseEntity.class),
             @ApiResponse(code = 404, message = "Payment not found", response = ResponseEntity.class)
     })
     @GetMapping("/{paymentId}")
     @PreAuthorize("hasAuthority('USER') or hasAuthority('ADMIN')")
-    public ResponseEntity<Mono<PaymentDto>> findById(@PathVariable("paymentId")
+    public Mono<ResponseEntity<PaymentDto>> findById(@PathVariable("paymentId")
                                                      @NotBlank(message = "Input must not be blank")
-                                                     @Valid final String paymentId) {
+                                                     @Valid final String paymentId,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                     final String ifNoneMatch) {
         log.info("*** PaymentDto, resource; fetch cart by id *");
-        return ResponseEntity.ok(paymentService.findById(Integer.parseInt(paymentId)));
+        Integer id = Integer.parseInt(paymentId);
+        return ETagHelper.conditional(paymentService.findETag(id), ifNoneMatch, () -> paymentService.findById(id));
     }
 
 
@@ -92,16 +120,19 @@ public class PaymentController {
 
     @ApiOperation(value = "Save payment", notes = "Save a new payment.")
     @ApiResponses({
-            @ApiResponse(code = 200, message = "Payment saved successfully", response = PaymentDto.class),
+            @ApiResponse(code = 200, message = "Payment saved successfully, or replayed for a repeated Idempotency-Key", response = PaymentDto.class),
+            @ApiResponse(code = 400, message = "Order has already been paid or Idempotency-Key reused for another payment", response = ResponseEntity.class),
             @ApiResponse(code = 500, message = "Internal Server Error", response = ResponseEntity.class)
     })
     @PostMapping
     @PreAuthorize("hasAuthority('USER')")
     public Mono<ResponseEntity<PaymentDto>> save(@RequestBody
                                                  @NotNull(message = "Input must not be NULL!")
-                                                 @Valid final PaymentDto paymentDto) {
+                                                 @Valid final PaymentDto paymentDto,
+                                                 @RequestHeader(value = AppConstant.IDEMPOTENCY_KEY_HEADER, required = false)
+                                                 final String idempotencyKey) {
         log.info("*** PaymentDto, resource; save payments *");
-        return paymentService.save(paymentDto)
+        return paymentService.save(paymentDto, idempotencyKey)
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
     }
@@ -156,4 +187,57 @@ public class PaymentController {
                 .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).body(false));
     }
 
-}
\ No newline at end of file
+    @ApiOperation(value = "Start payment reconciliation", notes = "Start a background run that checks every payment against its order.")
+    @ApiResponses({
+            @ApiResponse(code = 202, message = "Payment reconciliation started", response = ReconciliationRunDto.class),
+            @ApiResponse(code = 400, message = "A payment reconciliation is already running", response = ResponseEntity.class)
+    })
+    @PostMapping("/reconciliation")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<ReconciliationRunDto>> startReconciliation() {
+        log.info("*** ReconciliationRunDto, resource; start payment reconciliation *");
+        return paymentReconciliationService.start()
+                .map(run -> ResponseEntity.status(HttpStatus.ACCEPTED).body(run));
+    }
+
+    @ApiOperation(value = "Resume payment reconciliation", notes = "Resume a failed or interrupted run from its last checkpoint.")
+    @ApiResponses({
+            @ApiResponse(code = 202, message = "Payment reconciliation resumed", response = ReconciliationRunDto.class),
+            @ApiResponse(code = 400, message = "Run not found, already completed or another run is in progress", response = ResponseEntity.class)
+    })
+    @PostMapping("/reconciliation/{runId}/resume")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<ReconciliationRunDto>> resumeReconciliation(@PathVariable("runId") final String runId) {
+        log.info("*** ReconciliationRunDto, resource; resume payment reconciliation *");
+        return paymentReconciliationService.resume(runId)
+                .map(run -> ResponseEntity.status(HttpStatus.ACCEPTED).body(run));
+    }
+
+    @ApiOperation(value = "Get payment reconciliation progress", notes = "Retrieve the status and counters of a reconciliation run.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Payment reconciliation retrieved successfully", response = ReconciliationRunDto.class),
+            @ApiResponse(code = 400, message = "Payment reconciliation not found", response = ResponseEntity.class)
+    })
+    @GetMapping("/reconciliation/{runId}")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<ReconciliationRunDto>> findReconciliationByRunId(@PathVariable("runId") final String runId) {
+        log.info("*** ReconciliationRunDto, resource; fetch payment reconciliation by run id *");
+        return paymentReconciliationService.findByRunId(runId)
+                .map(ResponseEntity::ok);
+    }
+
+    @ApiOperation(value = "Get payment reconciliation mismatches", notes = "Retrieve a page of the mismatches found by a reconciliation run.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Mismatches retrieved successfully", response = Page.class)
+    })
+    @GetMapping("/reconciliation/{runId}/mismatches")
+    @PreAuthorize("hasAuthority('ADMIN')")
+    public Mono<ResponseEntity<Page<ReconciliationMismatch>>> findReconciliationMismatches(@PathVariable("runId") final String runId,
+                                                                                          @RequestParam(defaultValue = "0") int page,
+                                                                                          @RequestParam(defaultValue = "50") int size) {
+        log.info("*** ReconciliationMismatch Page, resource; fetch payment reconciliation mismatches *");
+        return paymentReconciliationService.findMismatches(runId, page, size)
+                .map(ResponseEntity::ok);
+    }
+
+}
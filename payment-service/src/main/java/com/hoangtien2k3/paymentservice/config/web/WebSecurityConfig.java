@@ -1,8 +1,11 @@
 package com.hoangtien2k3.paymentservice.config.web;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
+import com.hoangtien2k3.commonlib.security.ServiceTokenIssuer;
 import com.hoangtien2k3.paymentservice.security.JwtEntryPoint;
 import com.hoangtien2k3.paymentservice.security.JwtTokenFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -26,6 +29,18 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         this.jwtEntryPoint = jwtEntryPoint;
     }
 
+    @Bean
+    public JwtVerifier jwtVerifier(@Value("${jwt.secret}") String jwtSecret) {
+        return new JwtVerifier(jwtSecret);
+    }
+
+    // credential of the service's own background calls, e.g. the payment reconciliation
+    @Bean
+    public ServiceTokenIssuer serviceTokenIssuer(@Value("${jwt.secret}") String jwtSecret,
+                                                 @Value("${spring.application.name}") String serviceName) {
+        return new ServiceTokenIssuer(jwtSecret, serviceName);
+    }
+
     @Bean
     public JwtTokenFilter jwtTokenFilter() {
         return new JwtTokenFilter();
@@ -10,6 +10,9 @@ public class AppConstant {
     public static final String ZONED_DATE_TIME_FORMAT = "dd-MM-yyyy__HH:mm:ss:SSSSSS";
     public static final String INSTANT_FORMAT = "dd-MM-yyyy__HH:mm:ss:SSSSSS";
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
     public abstract static class DiscoveredDomainsApi {
 
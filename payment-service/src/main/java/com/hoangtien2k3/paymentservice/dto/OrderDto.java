@@ -43,4 +43,8 @@ public class OrderDto implements Serializable {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private ProductDto productDto;
 
+    @JsonProperty("cart")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private CartDto cartDto;
+
 }
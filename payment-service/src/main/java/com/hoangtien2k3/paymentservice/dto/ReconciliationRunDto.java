@@ -0,0 +1,43 @@
+package com.hoangtien2k3.paymentservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.hoangtien2k3.paymentservice.entity.ReconciliationRun;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class ReconciliationRunDto implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private String runId;
+    private ReconciliationRun.Status status;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Instant startedAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @JsonInclude(Include.NON_NULL)
+    private Instant finishedAt;
+
+    @JsonInclude(Include.NON_NULL)
+    private String error;
+
+    private long paymentsChecked;
+    private long mismatches;
+    private int partitions;
+    private int partitionsDone;
+
+}
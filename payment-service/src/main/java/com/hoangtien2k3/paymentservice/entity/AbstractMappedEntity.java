@@ -1,26 +1,34 @@
 package com.hoangtien2k3.paymentservice.entity;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
+import javax.persistence.EntityListeners;
+import javax.persistence.MappedSuperclass;
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.Instant;
 
+@MappedSuperclass
+@EntityListeners(AuditingEntityListener.class)
+@Data
 public abstract class AbstractMappedEntity implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
     @CreatedDate
     @JsonFormat(shape = JsonFormat.Shape.STRING)
-    @Column(name = "created_at")
+    // microsecond precision, the timestamps are the version behind the ETag of the row
+    @Column(name = "created_at", columnDefinition = "TIMESTAMP(6)")
     private Instant createdAt;
 
     @LastModifiedDate
     @JsonFormat(shape = JsonFormat.Shape.STRING)
-    @Column(name = "updated_at")
+    @Column(name = "updated_at", columnDefinition = "TIMESTAMP(6)")
     private Instant updatedAt;
 
 }
@@ -36,4 +36,23 @@ public class Payment extends AbstractMappedEntity implements Serializable {
     @Column(name = "payment_status")
     private PaymentStatus paymentStatus;
 
+    // key sent by the client in the Idempotency-Key header, retries with the same key replay this payment
+    @Column(name = "idempotency_key", unique = true, length = 64, updatable = false)
+    private String idempotencyKey;
+
+    // order id while the payment is payed, null otherwise; the unique index allows one payed payment per order
+    @Column(name = "paid_order_id", unique = true)
+    private Integer paidOrderId;
+
+    // set once the payment event was sent; updates never write it, only markEventPublished does
+    @Builder.Default
+    @Column(name = "event_published", nullable = false, updatable = false)
+    private Boolean eventPublished = false;
+
+    @PrePersist
+    @PreUpdate
+    void updatePaidOrderId() {
+        this.paidOrderId = Boolean.TRUE.equals(isPayed) ? orderId : null;
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.hoangtien2k3.paymentservice.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+@Table(name = "payment_reconciliation_mismatches",
+        indexes = @Index(name = "idx_reconciliation_mismatches_run_id", columnList = "run_id, payment_id"))
+public class ReconciliationMismatch implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {ORDER_NOT_FOUND, USER_MISMATCH, STATUS_MISMATCH}
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "mismatch_id", nullable = false, updatable = false)
+    private Long mismatchId;
+
+    @Column(name = "run_id", length = 36, nullable = false, updatable = false)
+    private String runId;
+
+    @Column(name = "payment_id", nullable = false)
+    private Integer paymentId;
+
+    @Column(name = "order_id")
+    private Integer orderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", length = 32, nullable = false)
+    private Type type;
+
+    @Column(name = "detail")
+    private String detail;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+}
@@ -0,0 +1,44 @@
+package com.hoangtien2k3.paymentservice.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+
+// one payment id range of a run; lastPaymentId is the checkpoint a resumed run continues after
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+@Table(name = "payment_reconciliation_partitions",
+        indexes = @Index(name = "idx_reconciliation_partitions_run_id", columnList = "run_id"))
+public class ReconciliationPartition implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "partition_id", nullable = false, updatable = false)
+    private Integer partitionId;
+
+    @Column(name = "run_id", length = 36, nullable = false, updatable = false)
+    private String runId;
+
+    @Column(name = "last_payment_id", nullable = false)
+    private Integer lastPaymentId;
+
+    @Column(name = "to_payment_id", nullable = false, updatable = false)
+    private Integer toPaymentId;
+
+    @Column(name = "payments_checked", nullable = false)
+    private Long paymentsChecked;
+
+    @Column(name = "mismatches", nullable = false)
+    private Long mismatches;
+
+    @Column(name = "done", nullable = false)
+    private Boolean done;
+
+}
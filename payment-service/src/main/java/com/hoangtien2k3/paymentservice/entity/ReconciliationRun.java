@@ -0,0 +1,48 @@
+package com.hoangtien2k3.paymentservice.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+@Entity
+@Table(name = "payment_reconciliation_runs")
+public class ReconciliationRun implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {RUNNING, COMPLETED, FAILED}
+
+    @Id
+    @Column(name = "run_id", length = 36, nullable = false, updatable = false)
+    private String runId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 16, nullable = false)
+    private Status status;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @Column(name = "error")
+    private String error;
+
+    // TRUE while the run holds the reconciliation lock, NULL otherwise; the unique key lets one run
+    // at a time hold it, across every instance of the service
+    @Column(name = "running_lock", unique = true)
+    private Boolean runningLock;
+
+    // refreshed with every checkpoint, a running run without a recent heartbeat lost its instance
+    @Column(name = "heartbeat_at")
+    private Instant heartbeatAt;
+
+}
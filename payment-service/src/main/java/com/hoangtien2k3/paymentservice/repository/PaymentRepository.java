@@ -1,18 +1,52 @@
 package com.hoangtien2k3.paymentservice.repository;
 
 import com.hoangtien2k3.paymentservice.entity.Payment;
+import com.hoangtien2k3.paymentservice.repository.projection.PaymentView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Integer> {
-    @Query("SELECT CASE " +
-            "WHEN COUNT(p) > 0 THEN TRUE " +
-            "ELSE FALSE " +
-            "END " +
-            "FROM Payment p " +
-            "WHERE p.orderId = :orderId " +
-            "AND p.isPayed = TRUE")
-    boolean existsByOrderIdAndIsPayed(Integer orderId);
+    Optional<Payment> findByIdempotencyKey(String idempotencyKey);
+
+    Optional<Payment> findByPaidOrderId(Integer paidOrderId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.eventPublished = true WHERE p.paymentId = :paymentId")
+    int markEventPublished(@Param("paymentId") Integer paymentId);
+
+    @Query("SELECT COALESCE(p.updatedAt, p.createdAt) FROM Payment p WHERE p.paymentId = :paymentId")
+    Optional<Instant> findVersionById(@Param("paymentId") Integer paymentId);
+
+    @Query("SELECT MIN(p.paymentId) FROM Payment p")
+    Integer findMinPaymentId();
+
+    @Query("SELECT MAX(p.paymentId) FROM Payment p")
+    Integer findMaxPaymentId();
+
+    // reconciliation reads one id range chunk by chunk, the pageable only carries the limit
+    @Query("SELECT new com.hoangtien2k3.paymentservice.repository.projection.PaymentView(" +
+            "p.paymentId, p.orderId, p.userId, p.isPayed, p.paymentStatus) " +
+            "FROM Payment p WHERE p.paymentId > :afterPaymentId AND p.paymentId <= :toPaymentId " +
+            "ORDER BY p.paymentId ASC")
+    List<PaymentView> findReconciliationChunk(@Param("afterPaymentId") Integer afterPaymentId,
+                                              @Param("toPaymentId") Integer toPaymentId,
+                                              Pageable pageable);
+
+    // keyset pagination, the pageable only carries the limit
+    @Query("SELECT p FROM Payment p ORDER BY p.paymentId ASC")
+    List<Payment> findFirstPageByPaymentId(Pageable pageable);
+
+    @Query("SELECT p FROM Payment p WHERE p.paymentId > :paymentId ORDER BY p.paymentId ASC")
+    List<Payment> findNextPageByPaymentId(@Param("paymentId") Integer paymentId, Pageable pageable);
 }
\ No newline at end of file
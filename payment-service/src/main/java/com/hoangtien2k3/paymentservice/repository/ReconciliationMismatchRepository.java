@@ -0,0 +1,12 @@
+package com.hoangtien2k3.paymentservice.repository;
+
+import com.hoangtien2k3.paymentservice.entity.ReconciliationMismatch;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationMismatchRepository extends JpaRepository<ReconciliationMismatch, Long> {
+    Page<ReconciliationMismatch> findAllByRunId(String runId, Pageable pageable);
+}
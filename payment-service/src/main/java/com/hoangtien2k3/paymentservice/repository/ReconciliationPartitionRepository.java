@@ -0,0 +1,12 @@
+package com.hoangtien2k3.paymentservice.repository;
+
+import com.hoangtien2k3.paymentservice.entity.ReconciliationPartition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReconciliationPartitionRepository extends JpaRepository<ReconciliationPartition, Integer> {
+    List<ReconciliationPartition> findAllByRunIdOrderByPartitionId(String runId);
+}
@@ -0,0 +1,20 @@
+package com.hoangtien2k3.paymentservice.repository;
+
+import com.hoangtien2k3.paymentservice.entity.ReconciliationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ReconciliationRunRepository extends JpaRepository<ReconciliationRun, String> {
+    List<ReconciliationRun> findAllByStatus(ReconciliationRun.Status status);
+
+    @Modifying
+    @Query("UPDATE ReconciliationRun r SET r.heartbeatAt = :heartbeatAt WHERE r.runId = :runId")
+    int updateHeartbeat(@Param("runId") String runId, @Param("heartbeatAt") Instant heartbeatAt);
+}
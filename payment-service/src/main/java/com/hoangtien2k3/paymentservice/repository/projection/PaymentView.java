@@ -0,0 +1,11 @@
+package com.hoangtien2k3.paymentservice.repository.projection;
+
+import com.hoangtien2k3.paymentservice.entity.PaymentStatus;
+
+// the columns reconciliation compares, read without hydrating Payment entities
+public record PaymentView(Integer paymentId,
+                          Integer orderId,
+                          Long userId,
+                          Boolean isPayed,
+                          PaymentStatus paymentStatus) {
+}
@@ -64,7 +64,7 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     private String extractToken(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer")) {
-            return authHeader.replace("Bearer", "");
+            return authHeader.replace("Bearer", "").trim();
         }
         return null;
     }
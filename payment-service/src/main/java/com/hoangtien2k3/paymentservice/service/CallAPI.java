@@ -3,36 +3,69 @@ package com.hoangtien2k3.paymentservice.service;
 import com.hoangtien2k3.paymentservice.dto.OrderDto;
 import com.hoangtien2k3.paymentservice.dto.UserDto;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 @Component
 public class CallAPI {
-    private final WebClient.Builder webClientBuilder;
+    private final WebClient orderWebClient;
+    private final WebClient userWebClient;
 
     @Autowired
-    public CallAPI(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    public CallAPI(@Qualifier("orderWebClient") WebClient orderWebClient,
+                   @Qualifier("userWebClient") WebClient userWebClient) {
+        this.orderWebClient = orderWebClient;
+        this.userWebClient = userWebClient;
     }
 
     public Mono<OrderDto> receiverPaymentDto(Integer orderId, String token) {
-        return webClientBuilder.baseUrl("http://localhost:8084").build()
+        return orderWebClient
                 .get()
-                .uri("/api/orders/" + orderId)
+                .uri("/api/orders/{orderId}", orderId)
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
                 .retrieve()
                 .bodyToMono(OrderDto.class);
     }
 
+    // ids travel in the body, a chunk of them would not fit in a request line
+    public Mono<List<OrderDto>> receiverOrderDtos(Collection<Integer> orderIds, String token) {
+        return orderWebClient
+                .post()
+                .uri("/api/orders/by-ids")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(orderIds)
+                .retrieve()
+                .bodyToFlux(OrderDto.class)
+                .collectList();
+    }
+
     public Mono<UserDto> receiverUserDto(Long userId, String token) {
-        return webClientBuilder.baseUrl("http://localhost:8088").build()
+        return userWebClient
                 .get()
-                .uri("/api/manager/user/" + userId)
+                .uri("/api/manager/user/{userId}", userId)
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
                 .retrieve()
                 .bodyToMono(UserDto.class);
     }
 
+    // ids travel in the body, a chunk of them would not fit in a request line
+    public Mono<Map<Long, UserDto>> receiverUserDtos(Collection<Long> userIds, String token) {
+        return userWebClient
+                .post()
+                .uri("/api/manager/users/by-ids")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .bodyValue(userIds)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<Long, UserDto>>() {
+                });
+    }
+
 }
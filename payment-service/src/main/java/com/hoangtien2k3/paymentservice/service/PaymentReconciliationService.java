@@ -0,0 +1,13 @@
+package com.hoangtien2k3.paymentservice.service;
+
+import com.hoangtien2k3.paymentservice.dto.ReconciliationRunDto;
+import com.hoangtien2k3.paymentservice.entity.ReconciliationMismatch;
+import org.springframework.data.domain.Page;
+import reactor.core.publisher.Mono;
+
+public interface PaymentReconciliationService {
+    Mono<ReconciliationRunDto> start();
+    Mono<ReconciliationRunDto> resume(String runId);
+    Mono<ReconciliationRunDto> findByRunId(String runId);
+    Mono<Page<ReconciliationMismatch>> findMismatches(String runId, int page, int size);
+}
@@ -1,5 +1,6 @@
 package com.hoangtien2k3.paymentservice.service;
 
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
 import com.hoangtien2k3.paymentservice.dto.PaymentDto;
 import org.springframework.data.domain.Page;
 import reactor.core.publisher.Mono;
@@ -9,8 +10,11 @@ import java.util.List;
 public interface PaymentService {
     Mono<List<PaymentDto>> findAll();
     Mono<Page<PaymentDto>> findAll(int page, int size, String sortBy, String sortOrder);
+    Mono<CursorPageResponse<PaymentDto>> findAll(String cursor, int size, boolean withTotal);
     Mono<PaymentDto> findById(Integer paymentId);
+    Mono<String> findETag(Integer paymentId);
     Mono<PaymentDto> save(PaymentDto paymentDto);
+    Mono<PaymentDto> save(PaymentDto paymentDto, String idempotencyKey);
     Mono<PaymentDto> update(PaymentDto paymentDto);
     Mono<PaymentDto> update(Integer paymentId, PaymentDto paymentDto);
     Mono<Void> deleteById(Integer paymentId);
@@ -0,0 +1,320 @@
+package com.hoangtien2k3.paymentservice.service.impl;
+
+import com.hoangtien2k3.commonlib.helper.CursorHelper;
+import com.hoangtien2k3.commonlib.security.ServiceTokenIssuer;
+import com.hoangtien2k3.paymentservice.dto.OrderDto;
+import com.hoangtien2k3.paymentservice.dto.ReconciliationRunDto;
+import com.hoangtien2k3.paymentservice.entity.PaymentStatus;
+import com.hoangtien2k3.paymentservice.entity.ReconciliationMismatch;
+import com.hoangtien2k3.paymentservice.entity.ReconciliationPartition;
+import com.hoangtien2k3.paymentservice.entity.ReconciliationRun;
+import com.hoangtien2k3.paymentservice.exception.wrapper.PaymentNotFoundException;
+import com.hoangtien2k3.paymentservice.repository.PaymentRepository;
+import com.hoangtien2k3.paymentservice.repository.ReconciliationMismatchRepository;
+import com.hoangtien2k3.paymentservice.repository.ReconciliationPartitionRepository;
+import com.hoangtien2k3.paymentservice.repository.ReconciliationRunRepository;
+import com.hoangtien2k3.paymentservice.repository.projection.PaymentView;
+import com.hoangtien2k3.paymentservice.service.CallAPI;
+import com.hoangtien2k3.paymentservice.service.PaymentReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles payments against their orders in the background. The payment id space is split into
+ * ranges that are processed in parallel; each range is read chunk by chunk with a keyset query and
+ * the orders of a chunk are fetched with one bulk lookup. The mismatches of a chunk are written in
+ * the same transaction as the range checkpoint, so an interrupted run resumes where it stopped
+ * without reporting anything twice. One run at a time holds a lock kept in its own row, so the lock
+ * holds across instances and is given up when the run's instance stops sending heartbeats. The order
+ * lookups use a service credential, a run outlives the request and the access token that started it.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class PaymentReconciliationServiceImpl implements PaymentReconciliationService {
+
+    // order-service accepts at most this many ids per by-ids request, they travel in the request body
+    private static final int MAX_CHUNK_SIZE = CursorHelper.MAX_PAGE_SIZE;
+
+    @Autowired
+    private final PaymentRepository paymentRepository;
+
+    @Autowired
+    private final ReconciliationRunRepository reconciliationRunRepository;
+
+    @Autowired
+    private final ReconciliationPartitionRepository reconciliationPartitionRepository;
+
+    @Autowired
+    private final ReconciliationMismatchRepository reconciliationMismatchRepository;
+
+    @Autowired
+    private final CallAPI callAPI;
+
+    @Autowired
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private final ServiceTokenIssuer serviceTokenIssuer;
+
+    @Value("${ecommerce.payment.reconciliation.chunk-size:500}")
+    private int chunkSize;
+
+    // 0 uses one range per available core
+    @Value("${ecommerce.payment.reconciliation.parallelism:0}")
+    private int parallelism;
+
+    @Value("${ecommerce.payment.reconciliation.order-lookup-timeout:30s}")
+    private Duration orderLookupTimeout;
+
+    @Value("${ecommerce.payment.reconciliation.stale-after:5m}")
+    private Duration staleAfter;
+
+    // the lock is taken and the run handed to the executor in one step, so a cancelled request
+    // cannot leave a locked run behind that nothing executes
+    @Override
+    public Mono<ReconciliationRunDto> start() {
+        log.info("*** ReconciliationRunDto, service; start payment reconciliation *");
+        String runId = UUID.randomUUID().toString();
+        return Mono.fromRunnable(() -> {
+                    lock(() -> createRun(runId));
+                    execute(runId);
+                })
+                .then(findByRunId(runId));
+    }
+
+    @Override
+    public Mono<ReconciliationRunDto> resume(String runId) {
+        log.info("*** ReconciliationRunDto, service; resume payment reconciliation *");
+        return Mono.fromRunnable(() -> {
+                    lock(() -> {
+                        ReconciliationRun run = reconciliationRunRepository.findById(runId)
+                                .orElseThrow(() -> new PaymentNotFoundException("Payment reconciliation with id " + runId + " not found"));
+                        if (run.getStatus() == ReconciliationRun.Status.COMPLETED) {
+                            throw new IllegalStateException("Payment reconciliation " + runId + " has already completed");
+                        }
+                        run.setFinishedAt(null);
+                        run.setError(null);
+                        return run;
+                    });
+                    execute(runId);
+                })
+                .then(findByRunId(runId));
+    }
+
+    // runs left RUNNING without a recent heartbeat are failed first, so a crashed instance does not
+    // hold the lock forever; two instances locking at once are told apart by the unique running_lock
+    private void lock(Supplier<ReconciliationRun> runToLock) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Instant now = Instant.now();
+                for (ReconciliationRun running : reconciliationRunRepository.findAllByStatus(ReconciliationRun.Status.RUNNING)) {
+                    if (running.getHeartbeatAt() != null && running.getHeartbeatAt().isAfter(now.minus(staleAfter))) {
+                        throw new IllegalStateException("Payment reconciliation " + running.getRunId() + " is still running");
+                    }
+                    log.warn("Payment reconciliation {} has no heartbeat since {}, releasing its lock",
+                            running.getRunId(), running.getHeartbeatAt());
+                    running.setStatus(ReconciliationRun.Status.FAILED);
+                    running.setError("No heartbeat since " + running.getHeartbeatAt());
+                    running.setFinishedAt(now);
+                    running.setRunningLock(null);
+                    reconciliationRunRepository.saveAndFlush(running);
+                }
+                ReconciliationRun run = runToLock.get();
+                run.setStatus(ReconciliationRun.Status.RUNNING);
+                run.setRunningLock(true);
+                run.setHeartbeatAt(now);
+                reconciliationRunRepository.saveAndFlush(run);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("Another payment reconciliation is already running", e);
+        }
+    }
+
+    @Override
+    public Mono<ReconciliationRunDto> findByRunId(String runId) {
+        log.info("*** ReconciliationRunDto, service; fetch payment reconciliation by run id *");
+        return Mono.fromSupplier(() -> {
+            ReconciliationRun run = reconciliationRunRepository.findById(runId)
+                    .orElseThrow(() -> new PaymentNotFoundException("Payment reconciliation with id " + runId + " not found"));
+            List<ReconciliationPartition> partitions = reconciliationPartitionRepository.findAllByRunIdOrderByPartitionId(runId);
+            return ReconciliationRunDto.builder()
+                    .runId(run.getRunId())
+                    .status(run.getStatus())
+                    .startedAt(run.getStartedAt())
+                    .finishedAt(run.getFinishedAt())
+                    .error(run.getError())
+                    .paymentsChecked(partitions.stream().mapToLong(ReconciliationPartition::getPaymentsChecked).sum())
+                    .mismatches(partitions.stream().mapToLong(ReconciliationPartition::getMismatches).sum())
+                    .partitions(partitions.size())
+                    .partitionsDone((int) partitions.stream().filter(ReconciliationPartition::getDone).count())
+                    .build();
+        });
+    }
+
+    @Override
+    public Mono<Page<ReconciliationMismatch>> findMismatches(String runId, int page, int size) {
+        log.info("*** ReconciliationMismatch Page, service; fetch mismatches of a payment reconciliation *");
+        return Mono.fromSupplier(() -> reconciliationMismatchRepository.findAllByRunId(runId,
+                PageRequest.of(page, size, Sort.by("paymentId"))));
+    }
+
+    // splits [min, max] of the payment ids into one range per partition
+    private ReconciliationRun createRun(String runId) {
+        ReconciliationRun run = ReconciliationRun.builder()
+                .runId(runId)
+                .status(ReconciliationRun.Status.RUNNING)
+                .startedAt(Instant.now())
+                .build();
+        Integer minPaymentId = paymentRepository.findMinPaymentId();
+        Integer maxPaymentId = paymentRepository.findMaxPaymentId();
+        if (minPaymentId == null) {
+            return run;
+        }
+        long step = ((long) maxPaymentId - minPaymentId) / partitionCount() + 1;
+        List<ReconciliationPartition> partitions = new ArrayList<>();
+        for (long from = minPaymentId; from <= maxPaymentId; from += step) {
+            partitions.add(ReconciliationPartition.builder()
+                    .runId(runId)
+                    .lastPaymentId((int) from - 1)
+                    .toPaymentId((int) Math.min(maxPaymentId, from + step - 1))
+                    .paymentsChecked(0L)
+                    .mismatches(0L)
+                    .done(false)
+                    .build());
+        }
+        reconciliationPartitionRepository.saveAll(partitions);
+        return run;
+    }
+
+    // a failed range does not stop the others, the run fails once every range has finished
+    private void execute(String runId) {
+        Mono.fromCallable(() -> reconciliationPartitionRepository.findAllByRunIdOrderByPartitionId(runId))
+                .flatMapMany(Flux::fromIterable)
+                .filter(partition -> !partition.getDone())
+                .flatMapDelayError(partition -> Mono.fromRunnable(() -> reconcile(partition))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        partitionCount(), 1)
+                .then()
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null,
+                        throwable -> {
+                            log.error("Payment reconciliation {} failed: {}", runId, throwable.getMessage());
+                            finish(runId, ReconciliationRun.Status.FAILED, throwable.getMessage());
+                        },
+                        () -> {
+                            log.info("Payment reconciliation {} completed", runId);
+                            finish(runId, ReconciliationRun.Status.COMPLETED, null);
+                        });
+    }
+
+    private void reconcile(ReconciliationPartition partition) {
+        int limit = Math.max(1, Math.min(chunkSize, MAX_CHUNK_SIZE));
+        while (!partition.getDone()) {
+            List<PaymentView> chunk = paymentRepository.findReconciliationChunk(
+                    partition.getLastPaymentId(), partition.getToPaymentId(), PageRequest.of(0, limit));
+            List<ReconciliationMismatch> mismatches = chunk.isEmpty()
+                    ? List.of()
+                    : diff(partition.getRunId(), chunk, fetchOrders(chunk));
+
+            if (!chunk.isEmpty()) {
+                partition.setLastPaymentId(chunk.get(chunk.size() - 1).paymentId());
+            }
+            partition.setPaymentsChecked(partition.getPaymentsChecked() + chunk.size());
+            partition.setMismatches(partition.getMismatches() + mismatches.size());
+            partition.setDone(chunk.size() < limit);
+            transactionTemplate.executeWithoutResult(status -> {
+                reconciliationMismatchRepository.saveAll(mismatches);
+                reconciliationPartitionRepository.save(partition);
+                reconciliationRunRepository.updateHeartbeat(partition.getRunId(), Instant.now());
+            });
+        }
+    }
+
+    private Map<Integer, OrderDto> fetchOrders(List<PaymentView> chunk) {
+        Set<Integer> orderIds = chunk.stream()
+                .map(PaymentView::orderId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (orderIds.isEmpty()) {
+            return Map.of();
+        }
+        List<OrderDto> orderDtos = callAPI.receiverOrderDtos(orderIds, serviceTokenIssuer.token()).block(orderLookupTimeout);
+        return orderDtos == null ? Map.of() : orderDtos.stream()
+                .collect(Collectors.toMap(OrderDto::getOrderId, Function.identity(), (a, b) -> a));
+    }
+
+    private List<ReconciliationMismatch> diff(String runId, List<PaymentView> chunk, Map<Integer, OrderDto> orders) {
+        Instant now = Instant.now();
+        List<ReconciliationMismatch> mismatches = new ArrayList<>();
+        for (PaymentView payment : chunk) {
+            OrderDto order = payment.orderId() == null ? null : orders.get(payment.orderId());
+            if (order == null) {
+                mismatches.add(mismatch(runId, payment, ReconciliationMismatch.Type.ORDER_NOT_FOUND,
+                        "order " + payment.orderId() + " does not exist", now));
+            } else {
+                Long orderUserId = order.getCartDto() == null ? null : order.getCartDto().getUserId();
+                if (orderUserId != null && payment.userId() != null && !orderUserId.equals(payment.userId())) {
+                    mismatches.add(mismatch(runId, payment, ReconciliationMismatch.Type.USER_MISMATCH,
+                            "payment user " + payment.userId() + ", order user " + orderUserId, now));
+                }
+            }
+            boolean payed = Boolean.TRUE.equals(payment.isPayed());
+            if (payed != (payment.paymentStatus() == PaymentStatus.COMPLETED)) {
+                mismatches.add(mismatch(runId, payment, ReconciliationMismatch.Type.STATUS_MISMATCH,
+                        "isPayed " + payment.isPayed() + ", paymentStatus " + payment.paymentStatus(), now));
+            }
+        }
+        return mismatches;
+    }
+
+    private ReconciliationMismatch mismatch(String runId, PaymentView payment, ReconciliationMismatch.Type type,
+                                            String detail, Instant createdAt) {
+        return ReconciliationMismatch.builder()
+                .runId(runId)
+                .paymentId(payment.paymentId())
+                .orderId(payment.orderId())
+                .type(type)
+                .detail(detail)
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private void finish(String runId, ReconciliationRun.Status status, String error) {
+        reconciliationRunRepository.findById(runId).ifPresent(run -> {
+            run.setStatus(status);
+            // the error column keeps the default varchar length
+            run.setError(error == null || error.length() <= 255 ? error : error.substring(0, 255));
+            run.setFinishedAt(Instant.now());
+            run.setRunningLock(null);
+            reconciliationRunRepository.save(run);
+        });
+    }
+
+    private int partitionCount() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -1,11 +1,17 @@
 package com.hoangtien2k3.paymentservice.service.impl;
 
-import com.google.gson.Gson;
+import com.hoangtien2k3.commonlib.client.EnrichmentExecutor;
+import com.hoangtien2k3.commonlib.helper.CursorHelper;
+import com.hoangtien2k3.commonlib.helper.ETagHelper;
+import com.hoangtien2k3.commonlib.kafka.event.PaymentEvent;
+import com.hoangtien2k3.commonlib.kafka.event.PaymentStatus;
+import com.hoangtien2k3.commonlib.viewmodel.collection.CursorPageResponse;
+import com.hoangtien2k3.paymentservice.constant.AppConstant;
 import com.hoangtien2k3.paymentservice.constant.KafkaConstant;
-import com.hoangtien2k3.paymentservice.dto.KafkaPaymentDto;
 import com.hoangtien2k3.paymentservice.dto.OrderDto;
 import com.hoangtien2k3.paymentservice.dto.PaymentDto;
 import com.hoangtien2k3.paymentservice.dto.UserDto;
+import com.hoangtien2k3.paymentservice.entity.Payment;
 import com.hoangtien2k3.paymentservice.event.EventProducer;
 import com.hoangtien2k3.paymentservice.exception.wrapper.PaymentNotFoundException;
 import com.hoangtien2k3.paymentservice.helper.PaymentMappingHelper;
@@ -13,10 +19,13 @@ import com.hoangtien2k3.paymentservice.repository.PaymentRepository;
 import com.hoangtien2k3.paymentservice.security.JwtTokenFilter;
 import com.hoangtien2k3.paymentservice.service.CallAPI;
 import com.hoangtien2k3.paymentservice.service.PaymentService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
@@ -25,7 +34,17 @@ import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
 import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -33,6 +52,10 @@ import java.util.List;
 @RequiredArgsConstructor
 public class PaymentServiceImpl implements PaymentService {
 
+    private static final String SORT_BY_PAYMENT_ID = "paymentId";
+    private static final int ORDER_LOOKUP_CHUNK_SIZE = 500;
+    private static final int USER_LOOKUP_CHUNK_SIZE = 500;
+
     @Autowired
     private final PaymentRepository paymentRepository;
 
@@ -42,83 +65,160 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private final CallAPI callAPI;
 
-    Gson gson = new Gson(); // google.code.gson
+    @Autowired
+    private final EnrichmentExecutor enrichmentExecutor;
+
+    private final Cache<String, Long> totalElementsCache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
+
+    private final Cache<String, Mono<PaymentDto>> inFlightSubmissions = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(10_000)
+            .build();
+
     @Autowired
     private EventProducer eventProducer;
 
     @Override
     public Mono<List<PaymentDto>> findAll() {
         log.info("*** PaymentDto List, service; fetch all payments *");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
         return Mono.fromSupplier(() -> paymentRepository.findAll()
                         .stream()
                         .map(PaymentMappingHelper::map)
                         .toList())
-                .flatMap(listPaymentDtos -> Flux.fromIterable(listPaymentDtos)
-                        .flatMap(paymentDto ->
-                                callAPI.receiverPaymentDto(paymentDto.getOrderId(), JwtTokenFilter.getTokenFromRequest())
-                                        .map(orderDto -> {
-                                            paymentDto.setOrderDto(modelMapper.map(orderDto, OrderDto.class));
-                                            return paymentDto;
-                                        })
-                                        .onErrorResume(throwable -> {
-                                            log.error("Error fetching order info: {}", throwable.getMessage());
-                                            return Mono.just(paymentDto);
-                                        })
-                        ).collectList()
-                );
+                .flatMap(listPaymentDtos -> enrich(listPaymentDtos, token, deadline));
     }
 
     @Override
     public Mono<Page<PaymentDto>> findAll(int page, int size, String sortBy, String sortOrder) {
         log.info("PaymentDto List, service; fetch all carts with paging and sorting");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
         Sort sort = Sort.by(Sort.Direction.fromString(sortOrder), sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
 
         return Mono.fromSupplier(() -> paymentRepository.findAll(pageable)
                         .map(PaymentMappingHelper::map)
                 )
-                .flatMap(paymentDtos -> Flux.fromIterable(paymentDtos)
-                        .flatMap(paymentDto ->
-                                callAPI.receiverPaymentDto(paymentDto.getOrderId(), JwtTokenFilter.getTokenFromRequest())
-                                        .map(orderDto -> {
-                                            paymentDto.setOrderDto(modelMapper.map(orderDto, OrderDto.class));
-                                            return paymentDto;
-                                        })
-                                        .onErrorResume(throwable -> {
-                                            log.error("Error fetching order info: {}", throwable.getMessage());
-                                            return Mono.just(paymentDto);
-                                        })
-                        )
-                        .collectList()
-                        .map(resultList -> new PageImpl<>(resultList, pageable, resultList.size()))
+                .flatMap(paymentPage -> enrich(paymentPage.getContent(), token, deadline)
+                        .map(resultList -> new PageImpl<>(resultList, pageable, paymentPage.getTotalElements()))
                 );
     }
 
+    @Override
+    public Mono<CursorPageResponse<PaymentDto>> findAll(String cursor, int size, boolean withTotal) {
+        log.info("PaymentDto List, service; fetch payments with keyset pagination");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
+        CursorHelper.Cursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : CursorHelper.decode(cursor, SORT_BY_PAYMENT_ID);
+        } catch (IllegalStateException e) {
+            return Mono.error(e);
+        }
+        int limit = CursorHelper.limit(size);
+        Pageable pageable = PageRequest.of(0, limit);
+
+        Mono<Optional<Long>> totalElements = withTotal
+                ? Mono.fromSupplier(() -> Optional.of(totalElementsCache.get("payments", key -> paymentRepository.count())))
+                : Mono.just(Optional.empty());
+
+        return Mono.fromSupplier(() -> (after == null
+                        ? paymentRepository.findFirstPageByPaymentId(pageable)
+                        : paymentRepository.findNextPageByPaymentId(after.id(), pageable))
+                        .stream()
+                        .map(PaymentMappingHelper::map)
+                        .toList()
+                )
+                .flatMap(paymentDtos -> enrich(paymentDtos, token, deadline))
+                .zipWith(totalElements, (paymentDtos, total) -> CursorPageResponse.<PaymentDto>builder()
+                        .collection(paymentDtos)
+                        .nextCursor(paymentDtos.size() == limit
+                                ? CursorHelper.encode(SORT_BY_PAYMENT_ID, paymentDtos.get(limit - 1).getPaymentId(), paymentDtos.get(limit - 1).getPaymentId())
+                                : null)
+                        .totalElements(total.orElse(null))
+                        .build());
+    }
+
+    // orders and users are fetched in parallel, each with its own timeout; a failed side leaves
+    // its part of the payments unenriched instead of failing the read
+    private Mono<List<PaymentDto>> enrich(List<PaymentDto> paymentDtos, String token, Instant deadline) {
+        if (paymentDtos.isEmpty()) {
+            return Mono.just(paymentDtos);
+        }
+        Set<Integer> orderIds = paymentDtos.stream().map(PaymentDto::getOrderId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<Long> userIds = paymentDtos.stream().map(PaymentDto::getUserId).filter(Objects::nonNull).collect(Collectors.toSet());
+
+        return Mono.zip(fetchOrders(orderIds, token, deadline), fetchUsers(userIds, token, deadline))
+                .map(tuple -> {
+                    paymentDtos.forEach(paymentDto -> {
+                        Optional.ofNullable(tuple.getT1().get(paymentDto.getOrderId())).ifPresent(paymentDto::setOrderDto);
+                        Optional.ofNullable(tuple.getT2().get(paymentDto.getUserId())).ifPresent(paymentDto::setUserDto);
+                    });
+                    return paymentDtos;
+                });
+    }
+
+    // one by-ids request per chunk of order ids
+    private Mono<Map<Integer, OrderDto>> fetchOrders(Set<Integer> orderIds, String token, Instant deadline) {
+        return Flux.fromIterable(chunks(orderIds, ORDER_LOOKUP_CHUNK_SIZE))
+                .flatMap(chunk -> enrichmentExecutor.call(EnrichmentExecutor.ORDER_SERVICE,
+                                        () -> callAPI.receiverOrderDtos(chunk, token),
+                                        deadline)
+                                .onErrorResume(throwable -> {
+                                    log.error("Error fetching order info: {}", throwable.getMessage());
+                                    return Mono.just(List.of());
+                                }),
+                        enrichmentExecutor.concurrency(EnrichmentExecutor.ORDER_SERVICE))
+                .flatMapIterable(Function.identity())
+                .collectMap(OrderDto::getOrderId);
+    }
+
+    // one by-ids request per chunk of user ids
+    private Mono<Map<Long, UserDto>> fetchUsers(Set<Long> userIds, String token, Instant deadline) {
+        return Flux.fromIterable(chunks(userIds, USER_LOOKUP_CHUNK_SIZE))
+                .flatMap(chunk -> enrichmentExecutor.call(EnrichmentExecutor.USER_SERVICE,
+                                        () -> callAPI.receiverUserDtos(chunk, token),
+                                        deadline)
+                                .onErrorResume(throwable -> {
+                                    log.error("Error fetching user info: {}", throwable.getMessage());
+                                    return Mono.just(Map.of());
+                                }),
+                        enrichmentExecutor.concurrency(EnrichmentExecutor.USER_SERVICE))
+                .flatMapIterable(Map::values)
+                .collectMap(UserDto::getId);
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> values, int chunkSize) {
+        List<T> ids = List.copyOf(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
+    }
+
     @Override
     public Mono<PaymentDto> findById(Integer paymentId) {
         log.info("*** PaymentDto, service; fetch payment by id *");
+        String token = JwtTokenFilter.getTokenFromRequest();
+        Instant deadline = enrichmentExecutor.deadline();
         return Mono.fromSupplier(() -> paymentRepository.findById(paymentId)
                         .map(PaymentMappingHelper::map)
                         .orElseThrow(() -> new PaymentNotFoundException(String.format("Order with id: %d not found", paymentId)))
                 )
-                .flatMap(paymentDto ->
-                        callAPI.receiverPaymentDto(paymentDto.getOrderDto().getOrderId(), JwtTokenFilter.getTokenFromRequest())
-                                .flatMap(orderDto -> {
-                                    paymentDto.setOrderDto(modelMapper.map(orderDto, OrderDto.class));
-
-                                    return callAPI.receiverUserDto(paymentDto.getUserId(), JwtTokenFilter.getTokenFromRequest())
-                                            .map(userDto -> {
-                                                paymentDto.setUserDto(modelMapper.map(userDto, UserDto.class));
-                                                return paymentDto;
-                                            }).publishOn(Schedulers.boundedElastic())
-                                            .switchIfEmpty(Mono.just(paymentDto));
-
-                                })
-                                .onErrorResume(throwable -> {
-                                    log.error("Error fetching order or user info: {}", throwable.getMessage());
-                                    return Mono.just(paymentDto);
-                                })
-                );
+                .flatMap(paymentDto -> enrich(List.of(paymentDto), token, deadline)
+                        .thenReturn(paymentDto));
+    }
+
+    @Override
+    public Mono<String> findETag(Integer paymentId) {
+        return Mono.fromSupplier(() -> paymentRepository.findVersionById(paymentId)
+                .map(updatedAt -> ETagHelper.of(paymentId, updatedAt))
+                .orElse(null));
     }
 
     public Mono<OrderDto> getOrderDto(Integer orderId) {
@@ -128,25 +228,39 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     public Mono<PaymentDto> save(PaymentDto paymentDto) {
+        return save(paymentDto, null);
+    }
+
+    // concurrent submissions with the same key share one save, later retries replay the stored payment
+    @Override
+    public Mono<PaymentDto> save(PaymentDto paymentDto, String idempotencyKey) {
         log.info("PaymentDto, service; save order");
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return submit(paymentDto, null);
+        }
+        if (idempotencyKey.length() > AppConstant.IDEMPOTENCY_KEY_MAX_LENGTH) {
+            return Mono.error(new IllegalStateException("Idempotency-Key must be at most "
+                    + AppConstant.IDEMPOTENCY_KEY_MAX_LENGTH + " characters"));
+        }
+        return Mono.defer(() -> {
+            Mono<PaymentDto> submission = inFlightSubmissions.get(idempotencyKey, key -> submit(paymentDto, key).cache());
+            return submission
+                    // a failed submission is not remembered, so the client can retry it
+                    .doOnError(throwable -> inFlightSubmissions.asMap().remove(idempotencyKey, submission))
+                    .flatMap(stored -> isSameSubmission(stored, paymentDto)
+                            ? Mono.just(stored)
+                            : Mono.error(new IllegalStateException("Idempotency-Key was already used for another payment")));
+        });
+    }
 
-        return Mono.just(paymentDto)
-                .filter(dto -> !paymentRepository.existsByOrderIdAndIsPayed(dto.getOrderId()))
-                .switchIfEmpty(Mono.error(new PaymentNotFoundException("Order has already been paid.")))
-                .flatMap(dto -> Mono.fromCallable(() -> PaymentMappingHelper.map(paymentRepository.save(PaymentMappingHelper.map(dto)))))
-                .flatMap(savedPaymentDto -> {
-                    KafkaPaymentDto newPaymentDto = KafkaPaymentDto.builder()
-                            .paymentId(savedPaymentDto.getPaymentId())
-                            .isPayed(savedPaymentDto.getIsPayed())
-                            .paymentStatus(savedPaymentDto.getPaymentStatus())
-                            .orderId(savedPaymentDto.getOrderId())
-                            .userId(savedPaymentDto.getUserId())
-                            .build();
-
-                    // Send Kafka notifications without waiting
-                    return eventProducer.send(KafkaConstant.STATUS_PAYMENT_SUCCESSFUL, gson.toJson(newPaymentDto))
-                            .thenReturn(savedPaymentDto);
-                })
+    // the unique indexes on idempotency_key and paid_order_id replace the pre-check query, only a
+    // rejected insert has to look up what it collided with
+    private Mono<PaymentDto> submit(PaymentDto paymentDto, String idempotencyKey) {
+        Payment payment = PaymentMappingHelper.map(paymentDto);
+        payment.setIdempotencyKey(idempotencyKey);
+        return Mono.fromCallable(() -> paymentRepository.save(payment))
+                .flatMap(this::publish)
+                .onErrorResume(DataIntegrityViolationException.class, e -> replay(idempotencyKey, payment.getPaidOrderId()))
                 .onErrorResume(throwable -> {
                     log.error("Error saving payment or sending Kafka message: {}", throwable.getMessage());
                     return Mono.error(throwable);
@@ -154,6 +268,47 @@ public class PaymentServiceImpl implements PaymentService {
                 .subscribeOn(Schedulers.boundedElastic()); // run on another thread
     }
 
+    // the payment row commits before the event is sent, so a payment whose send failed stays unpublished
+    // and the next submission that collides with it sends the event again
+    private Mono<PaymentDto> publish(Payment payment) {
+        PaymentDto savedPaymentDto = PaymentMappingHelper.map(payment);
+        if (Boolean.TRUE.equals(payment.getEventPublished())) {
+            return Mono.just(savedPaymentDto);
+        }
+        PaymentEvent paymentEvent = PaymentEvent.newBuilder()
+                .setPaymentId(savedPaymentDto.getPaymentId())
+                .setIsPayed(savedPaymentDto.getIsPayed())
+                .setPaymentStatus(Optional.ofNullable(savedPaymentDto.getPaymentStatus())
+                        .map(status -> PaymentStatus.valueOf(status.name()))
+                        .orElse(null))
+                .setOrderId(savedPaymentDto.getOrderId())
+                .setUserId(savedPaymentDto.getUserId())
+                .build();
+
+        return eventProducer.send(KafkaConstant.STATUS_PAYMENT_SUCCESSFUL, String.valueOf(paymentEvent.getOrderId()), paymentEvent)
+                .then(Mono.fromRunnable(() -> paymentRepository.markEventPublished(savedPaymentDto.getPaymentId())))
+                .thenReturn(savedPaymentDto);
+    }
+
+    private Mono<PaymentDto> replay(String idempotencyKey, Integer paidOrderId) {
+        Optional<Payment> replayed = Optional.ofNullable(idempotencyKey)
+                .flatMap(paymentRepository::findByIdempotencyKey);
+        if (replayed.isPresent()) {
+            return publish(replayed.get());
+        }
+        // a second payment for a paid order is still rejected, but finishes publishing the first one
+        Mono<PaymentDto> unpublished = Optional.ofNullable(paidOrderId)
+                .flatMap(paymentRepository::findByPaidOrderId)
+                .map(this::publish)
+                .orElseGet(Mono::empty);
+        return unpublished.then(Mono.error(new PaymentNotFoundException("Order has already been paid.")));
+    }
+
+    private boolean isSameSubmission(PaymentDto stored, PaymentDto paymentDto) {
+        return Objects.equals(stored.getOrderId(), paymentDto.getOrderId())
+                && Objects.equals(stored.getUserId(), paymentDto.getUserId());
+    }
+
 
     @Override
     public Mono<PaymentDto> update(PaymentDto paymentDto) {
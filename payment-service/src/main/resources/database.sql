@@ -4,11 +4,46 @@ CREATE TABLE payments (
 	order_id INT(11),
 	is_payed BOOLEAN,
 	payment_status VARCHAR(255),
-	created_at TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
-	updated_at TIMESTAMP
+	idempotency_key VARCHAR(64) UNIQUE,
+	paid_order_id INT(11) UNIQUE,
+	event_published BOOLEAN DEFAULT TRUE NOT NULL,
+	created_at TIMESTAMP(6) DEFAULT LOCALTIMESTAMP NOT NULL NULL_TO_DEFAULT,
+	updated_at TIMESTAMP(6)
 );
 
 
+CREATE TABLE payment_reconciliation_runs (
+	run_id VARCHAR(36) NOT NULL PRIMARY KEY,
+	status VARCHAR(16) NOT NULL,
+	started_at TIMESTAMP NOT NULL,
+	finished_at TIMESTAMP,
+	error VARCHAR(255),
+	running_lock BOOLEAN UNIQUE,
+	heartbeat_at TIMESTAMP
+);
+
+CREATE TABLE payment_reconciliation_partitions (
+	partition_id INT(11) NOT NULL PRIMARY KEY AUTO_INCREMENT,
+	run_id VARCHAR(36) NOT NULL,
+	last_payment_id INT(11) NOT NULL,
+	to_payment_id INT(11) NOT NULL,
+	payments_checked BIGINT NOT NULL,
+	mismatches BIGINT NOT NULL,
+	done BOOLEAN NOT NULL
+);
+CREATE INDEX idx_reconciliation_partitions_run_id ON payment_reconciliation_partitions (run_id);
+
+CREATE TABLE payment_reconciliation_mismatches (
+	mismatch_id BIGINT NOT NULL PRIMARY KEY AUTO_INCREMENT,
+	run_id VARCHAR(36) NOT NULL,
+	payment_id INT(11) NOT NULL,
+	order_id INT(11),
+	type VARCHAR(32) NOT NULL,
+	detail VARCHAR(255),
+	created_at TIMESTAMP NOT NULL
+);
+CREATE INDEX idx_reconciliation_mismatches_run_id ON payment_reconciliation_mismatches (run_id, payment_id);
+
 INSERT INTO payments
 (order_id, is_payed, payment_status) VALUES
 (1, false, 'IN_PROGRESS'),
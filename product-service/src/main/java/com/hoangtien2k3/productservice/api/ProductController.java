@@ -41,6 +41,33 @@ public class ProductController {
         return ResponseEntity.ok(productService.findById(Integer.parseInt(productId)));
     }
 
+    // Get detailed information of several products in a single request
+    @GetMapping("/by-ids")
+    public ResponseEntity<List<ProductDto>> findAllByIds(@RequestParam("ids")
+                                                         @NotNull(message = "Input must not be NULL!")
+                                                         final List<Integer> productIds) {
+        log.info("ProductDto List, resource; fetch products by ids");
+        return findProductsByIds(productIds);
+    }
+
+    // Same lookup with the ids in the body, a batch of ids does not fit in a request line
+    @PostMapping("/by-ids")
+    public ResponseEntity<List<ProductDto>> postAllByIds(@RequestBody
+                                                         @NotNull(message = "Input must not be NULL!")
+                                                         final List<Integer> productIds) {
+        log.info("ProductDto List, resource; fetch products by ids");
+        return findProductsByIds(productIds);
+    }
+
+    // more than ProductServiceImpl.MAX_LOOKUP_IDS ids is answered with 400
+    private ResponseEntity<List<ProductDto>> findProductsByIds(List<Integer> productIds) {
+        try {
+            return ResponseEntity.ok(productService.findAllByIds(productIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Create a new product
     @PostMapping
     public ResponseEntity<ProductDto> save(@RequestBody
@@ -3,6 +3,7 @@ package com.hoangtien2k3.productservice.service;
 import com.hoangtien2k3.productservice.dto.ProductDto;
 import reactor.core.publisher.Flux;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductService {
@@ -11,6 +12,8 @@ public interface ProductService {
 
     ProductDto findById(final Integer productId);
 
+    List<ProductDto> findAllByIds(final Collection<Integer> productIds);
+
     ProductDto save(final ProductDto productDto);
 
     ProductDto update(final ProductDto productDto);
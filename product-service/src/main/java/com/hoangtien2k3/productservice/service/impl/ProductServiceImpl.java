@@ -19,6 +19,8 @@ import reactor.core.publisher.Flux;
 
 import javax.swing.text.html.Option;
 import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +29,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 @Service
 public class ProductServiceImpl implements ProductService {
+    public static final int MAX_LOOKUP_IDS = 1000;
 
     @Autowired
     private final ProductRepository productRepository;
@@ -56,6 +59,22 @@ public class ProductServiceImpl implements ProductService {
                 .orElseThrow(() -> new ProductNotFoundException(String.format("Product with id[%d] not found", productId)));
     }
 
+    @Override
+    public List<ProductDto> findAllByIds(Collection<Integer> productIds) {
+        log.info("ProductDto List, service; fetch products by ids");
+        if (productIds == null || productIds.isEmpty()) {
+            return List.of();
+        }
+        if (new HashSet<>(productIds).size() > MAX_LOOKUP_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_LOOKUP_IDS + " product ids can be fetched at once");
+        }
+        // one IN (...) query for the whole batch instead of one lookup per id
+        return productRepository.findAllById(new HashSet<>(productIds))
+                .stream()
+                .map(ProductMappingHelper::map)
+                .toList();
+    }
+
     @Override
     public ProductDto save(ProductDto productDto) {
         log.info("ProductDto, service; save product");
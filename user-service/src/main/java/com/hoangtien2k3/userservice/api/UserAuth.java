@@ -1,5 +1,6 @@
 package com.hoangtien2k3.userservice.api;
 
+import com.hoangtien2k3.userservice.exception.wrapper.PasswordHashRejectedException;
 import com.hoangtien2k3.userservice.model.dto.request.Login;
 import com.hoangtien2k3.userservice.model.dto.request.SignUp;
 import com.hoangtien2k3.userservice.model.dto.response.TokenValidationResponse;
@@ -39,6 +40,12 @@ public class UserAuth {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private TokenValidate tokenValidate;
+
+    @Autowired
+    private AuthorityTokenUtil authorityTokenUtil;
+
     @Autowired
     public UserAuth(UserService userService, JwtProvider jwtProvider) {
         this.userService = userService;
@@ -48,18 +55,23 @@ public class UserAuth {
     @ApiOperation(value = "Register a new user", notes = "Registers a new user with the provided details.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "User created successfully", response = ResponseMessage.class),
+            @ApiResponse(code = 503, message = "Too many signups in progress, retry shortly", response = ResponseMessage.class),
             @ApiResponse(code = 500, message = "Internal Server Error", response = ResponseMessage.class)
     })
     @PostMapping({"/signup", "/register"})
-    public Mono<ResponseMessage> register(@Valid @RequestBody SignUp signUp) {
+    public Mono<ResponseEntity<ResponseMessage>> register(@Valid @RequestBody SignUp signUp) {
         return userService.register(signUp)
-                .map(user -> new ResponseMessage("Create user: " + signUp.getUsername() + " successfully."))
-                .onErrorResume(error -> Mono.just(new ResponseMessage("Error occurred while creating the account.")));
+                .map(user -> ResponseEntity.ok(new ResponseMessage("Create user: " + signUp.getUsername() + " successfully.")))
+                .onErrorResume(PasswordHashRejectedException.class, error -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, PasswordHashRejectedException.RETRY_AFTER_SECONDS)
+                        .body(new ResponseMessage("Too many signups in progress, retry shortly."))))
+                .onErrorResume(error -> Mono.just(ResponseEntity.ok(new ResponseMessage("Error occurred while creating the account."))));
     }
 
     @ApiOperation(value = "User login", notes = "Logs in a user with the provided credentials.")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Login successful", response = JwtResponseMessage.class),
+            @ApiResponse(code = 503, message = "Too many logins in progress, retry shortly", response = ResponseEntity.class),
             @ApiResponse(code = 500, message = "Internal Server Error", response = ResponseEntity.class)
     })
     @PostMapping({"/signin", "/login"})
@@ -72,6 +84,11 @@ public class UserAuth {
                             null,
                             new InformationMessage()
                     );
+                    if (error instanceof PasswordHashRejectedException) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, PasswordHashRejectedException.RETRY_AFTER_SECONDS)
+                                .body(errorjwtResponseMessage));
+                    }
                     return Mono.just(new ResponseEntity<>(errorjwtResponseMessage, HttpStatus.INTERNAL_SERVER_ERROR));
                 });
     }
@@ -83,9 +100,10 @@ public class UserAuth {
     })
     @PostMapping("/logout")
     @PreAuthorize("isAuthenticated() and hasAuthority('USER')")
-    public Mono<ResponseEntity<String>> logout() {
+    public Mono<ResponseEntity<String>> logout(@RequestHeader("Authorization") String authorizationToken) {
         log.info("Logout endpoint called");
-        return userService.logout()
+        String token = authorizationToken.replace("Bearer", "").trim();
+        return userService.logout(token)
                 .then(Mono.just(new ResponseEntity<>("Logged out successfully.", HttpStatus.OK)))
                 .onErrorResume(error -> {
                     log.error("Logout failed", error);
@@ -124,8 +142,7 @@ public class UserAuth {
     })
     @GetMapping({"/validateToken", "/validate-token"})
     public Boolean validateToken(@RequestHeader(name = "Authorization") String authorizationToken) {
-        TokenValidate validate = new TokenValidate();
-        if (validate.validateToken(authorizationToken)) {
+        if (tokenValidate.validateToken(authorizationToken)) {
             return ResponseEntity.ok(new TokenValidationResponse("Valid token")).hasBody();
         } else {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -141,7 +158,6 @@ public class UserAuth {
     @GetMapping({"/hasAuthority", "/authorization"})
     public Boolean getAuthority(@RequestHeader(name = "Authorization") String authorizationToken,
                                 String requiredRole) {
-        AuthorityTokenUtil authorityTokenUtil = new AuthorityTokenUtil();
         List<String> authorities = authorityTokenUtil.checkPermission(authorizationToken);
 
         if (authorities.contains(requiredRole)) {
@@ -1,5 +1,6 @@
 package com.hoangtien2k3.userservice.api;
 
+import com.hoangtien2k3.userservice.exception.wrapper.PasswordHashRejectedException;
 import com.hoangtien2k3.userservice.exception.wrapper.TokenErrorOrAccessTimeOut;
 import com.hoangtien2k3.userservice.exception.wrapper.UserNotFoundException;
 import com.hoangtien2k3.userservice.http.HeaderGenerator;
@@ -7,19 +8,25 @@ import com.hoangtien2k3.userservice.model.dto.request.ChangePasswordRequest;
 import com.hoangtien2k3.userservice.model.dto.request.SignUp;
 import com.hoangtien2k3.userservice.model.dto.request.UserDto;
 import com.hoangtien2k3.userservice.model.dto.response.ResponseMessage;
+import com.hoangtien2k3.userservice.model.dto.response.UserSummary;
 import com.hoangtien2k3.userservice.security.jwt.JwtProvider;
+import com.hoangtien2k3.userservice.security.userprinciple.UserPrinciple;
 import com.hoangtien2k3.userservice.service.UserService;
 import io.swagger.annotations.*;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Slf4j
@@ -55,6 +62,11 @@ public class UserManager {
                         new ResponseMessage("Update user: " + updateDTO.getUsername() + " successfully."),
                         HttpStatus.OK))
                 )
+                .onErrorResume(PasswordHashRejectedException.class,
+                        error -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER, PasswordHashRejectedException.RETRY_AFTER_SECONDS)
+                                .body(new ResponseMessage("Update user: " + updateDTO.getUsername() + " failed, retry shortly.")))
+                )
                 .onErrorResume(
                         error -> Mono.just(new ResponseEntity<>(
                                 new ResponseMessage("Update user: " + updateDTO.getUsername() + " failed " + error.getMessage()),
@@ -116,6 +128,48 @@ public class UserManager {
                 : new ResponseEntity<>(null, headerGenerator.getHeadersForError(), HttpStatus.NOT_FOUND);
     }
 
+    @ApiOperation(value = "Get users by IDs",
+            notes = "Retrieve a map of user ID to user information for the provided IDs, in one lookup.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Users retrieved successfully", response = Map.class),
+            @ApiResponse(code = 400, message = "Too many IDs", response = ResponseEntity.class)
+    })
+    @GetMapping("/users/by-ids")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER')")
+    public Mono<ResponseEntity<Map<Long, UserSummary>>> getUsersByIds(@RequestParam("ids") List<Long> userIds,
+                                                                     @AuthenticationPrincipal UserPrinciple principal) {
+        log.info("*** UserSummary Map, resource; fetch users by ids *");
+        return findUsersByIds(userIds, principal);
+    }
+
+    // same lookup with the ids in the body, for id lists too long for a query string
+    @ApiOperation(value = "Get users by IDs (POST)",
+            notes = "Retrieve a map of user ID to user information for the IDs in the request body.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Users retrieved successfully", response = Map.class),
+            @ApiResponse(code = 400, message = "Too many IDs", response = ResponseEntity.class)
+    })
+    @PostMapping("/users/by-ids")
+    @PreAuthorize("hasAuthority('ADMIN') or hasAuthority('USER')")
+    public Mono<ResponseEntity<Map<Long, UserSummary>>> postUsersByIds(@RequestBody List<Long> userIds,
+                                                                      @AuthenticationPrincipal UserPrinciple principal) {
+        log.info("*** UserSummary Map, resource; fetch users by ids *");
+        return findUsersByIds(userIds, principal);
+    }
+
+    // as with /user/{id}, a user only gets their own entry back while an admin gets every requested user
+    private Mono<ResponseEntity<Map<Long, UserSummary>>> findUsersByIds(List<Long> userIds, UserPrinciple principal) {
+        boolean admin = principal.getAuthorities().stream()
+                .anyMatch(authority -> "ADMIN".equals(authority.getAuthority()));
+        List<Long> visibleIds = admin
+                ? userIds
+                : userIds.stream().filter(id -> id.equals(principal.id())).distinct().toList();
+        return userService.findAllByIds(visibleIds)
+                .map(users -> new ResponseEntity<>(users, headerGenerator.getHeadersForSuccessGetMethod(), HttpStatus.OK))
+                .onErrorResume(IllegalArgumentException.class,
+                        error -> Mono.just(new ResponseEntity<>(headerGenerator.getHeadersForError(), HttpStatus.BAD_REQUEST)));
+    }
+
     @ApiOperation(value = "Get a secure user resource",
             authorizations = { @Authorization(value="JWT") }
     )
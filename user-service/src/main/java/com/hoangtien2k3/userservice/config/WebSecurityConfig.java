@@ -1,9 +1,11 @@
 package com.hoangtien2k3.userservice.config;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
 import com.hoangtien2k3.userservice.security.jwt.JwtEntryPoint;
 import com.hoangtien2k3.userservice.security.jwt.JwtTokenFilter;
 import com.hoangtien2k3.userservice.security.userprinciple.UserDetailService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -18,9 +20,14 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -29,12 +36,24 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     private final UserDetailService userDetailService;
     private final JwtEntryPoint jwtEntryPoint;
 
+    // algorithm new hashes are written with, older hashes are upgraded on the next login
+    @Value("${ecommerce.password-hash.algorithm:bcrypt}")
+    private String passwordHashAlgorithm;
+
+    @Value("${ecommerce.password-hash.bcrypt-strength:10}")
+    private int bcryptStrength;
+
     @Autowired
     public WebSecurityConfig(UserDetailService userDetailService, JwtEntryPoint jwtEntryPoint) {
         this.userDetailService = userDetailService;
         this.jwtEntryPoint = jwtEntryPoint;
     }
 
+    @Bean
+    public JwtVerifier jwtVerifier(@Value("${jwt.secret}") String jwtSecret) {
+        return new JwtVerifier(jwtSecret);
+    }
+
     @Bean
     public JwtTokenFilter jwtTokenFilter() {
         return new JwtTokenFilter();
@@ -42,7 +61,14 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("pbkdf2", new Pbkdf2PasswordEncoder());
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(passwordHashAlgorithm, encoders);
+        // hashes stored before the {id} prefix was introduced are plain BCrypt
+        passwordEncoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return passwordEncoder;
     }
 
     @Bean
@@ -1,5 +1,6 @@
 package com.hoangtien2k3.userservice.config.kafka;
 
+import com.hoangtien2k3.commonlib.kafka.avro.EventSerializer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -19,14 +20,21 @@ public class CommonConfiguration {
     @Autowired
     private ReactiveKafkaAppProperties reactiveKafkaAppProperties;
 
+    // idempotent, batched and compressed; Avro events are written in binary, anything else as JSON
     @Bean
-    KafkaSender<String,String> kafkaSender(){
+    KafkaSender<String, Object> kafkaSender() {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, reactiveKafkaAppProperties.bootstrapServers);
         props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, reactiveKafkaAppProperties.lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, reactiveKafkaAppProperties.batchSize);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, reactiveKafkaAppProperties.compressionType);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        SenderOptions<String, String> senderOptions = SenderOptions.create(props);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, EventSerializer.class);
+        SenderOptions<String, Object> senderOptions = SenderOptions.create(props);
+
         return KafkaSender.create(senderOptions);
     }
 
@@ -0,0 +1,27 @@
+package com.hoangtien2k3.userservice.config.kafka;
+
+import com.hoangtien2k3.commonlib.security.revocation.TokenDenylist;
+import com.hoangtien2k3.commonlib.security.revocation.TokenRevocationListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+// every instance keeps its own copy of the revoked token ids, fed from the tokenRevoked topic
+@Configuration
+public class TokenRevocationConfig {
+
+    @Bean
+    TokenDenylist tokenDenylist() {
+        return new TokenDenylist();
+    }
+
+    @Bean
+    TokenRevocationListener tokenRevocationListener(@Value("${kafka.bootstrap.servers}") String bootstrapServers,
+                                                    @Value("${spring.application.name}") String serviceName,
+                                                    @Value("${jwt.expiration}") long jwtExpiration,
+                                                    TokenDenylist tokenDenylist) {
+        return new TokenRevocationListener(bootstrapServers, serviceName, Duration.ofSeconds(jwtExpiration), tokenDenylist);
+    }
+}
@@ -4,6 +4,7 @@ import com.hoangtien2k3.userservice.exception.payload.ExceptionMessage;
 import com.hoangtien2k3.userservice.exception.wrapper.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -83,6 +84,18 @@ public class ApiExceptionHandler {
                         .build());
     }
 
+    @ExceptionHandler(PasswordHashRejectedException.class)
+    public ResponseEntity<ExceptionMessage> handlePasswordHashRejectedException(PasswordHashRejectedException ex) {
+        log.warn("Password hash pool saturated: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, PasswordHashRejectedException.RETRY_AFTER_SECONDS)
+                .body(ExceptionMessage.builder()
+                        .msg(ex.getMessage())
+                        .httpStatus(HttpStatus.SERVICE_UNAVAILABLE)
+                        .timestamp(ZonedDateTime.now(ZoneId.systemDefault()))
+                        .build());
+    }
+
     @ExceptionHandler(UserNotAuthenticatedException.class)
     public ResponseEntity<String> handleUserNotAuthenticatedException(UserNotAuthenticatedException ex) {
         log.error("User not authenticated: {}", ex.getMessage());
@@ -0,0 +1,18 @@
+package com.hoangtien2k3.userservice.exception.wrapper;
+
+public class PasswordHashRejectedException extends RuntimeException {
+    // seconds a client should wait before retrying, sent as Retry-After with the 503
+    public static final String RETRY_AFTER_SECONDS = "1";
+
+    public PasswordHashRejectedException() {
+        super();
+    }
+
+    public PasswordHashRejectedException(String message) {
+        super(message);
+    }
+
+    public PasswordHashRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,37 +1,184 @@
 package com.hoangtien2k3.userservice.model.dto.model;
 
-import lombok.Getter;
-import lombok.Setter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
-@Getter
-@Setter
+/**
+ * Sessions issued to each user, bounded in users, sessions per user and time.
+ * A session expires with its refresh token; expired sessions are dropped lazily when the user's
+ * sessions are touched, and a user entry expires with its newest session. Removing one session
+ * never extends the others.
+ */
 @Component
 public class TokenManager {
-    public String TOKEN;
-    public String REFRESHTOKEN;
-    private Map<String, String> tokenStore = new HashMap<>();
-    private Map<String, String> refreshTokenStore = new HashMap<>();
 
-    public void storeToken(String username, String token) {
-        tokenStore.put(username, token);
-        TOKEN = token;
+    private final Cache<String, Map<String, Session>> sessionsByUser;
+    private final int maxSessionsPerUser;
+    private final long sessionTtlMillis;
+    private final AtomicLong sessions = new AtomicLong();
+    private final LongAdder evictedSessions = new LongAdder();
+
+    public TokenManager(MeterRegistry meterRegistry,
+                        @Value("${jwt.refreshExpiration}") int jwtRefreshExpiration,
+                        @Value("${ecommerce.token-store.max-users:100000}") long maxUsers,
+                        @Value("${ecommerce.token-store.max-sessions-per-user:10}") int maxSessionsPerUser) {
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.sessionTtlMillis = jwtRefreshExpiration * 1000L;
+        this.sessionsByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfter(new NewestSessionExpiry())
+                // run on the removing thread, so the session count never lags behind the cache
+                .executor(Runnable::run)
+                .removalListener((String username, Map<String, Session> removed, RemovalCause cause) -> {
+                    if (removed != null && cause != RemovalCause.REPLACED) {
+                        sessions.addAndGet(-removed.size());
+                    }
+                })
+                .recordStats()
+                .build();
+
+        Gauge.builder("token.store.users", sessionsByUser, Cache::estimatedSize)
+                .register(meterRegistry);
+        Gauge.builder("token.store.sessions", sessions, AtomicLong::get)
+                .register(meterRegistry);
+        FunctionCounter.builder("token.store.evictions", sessionsByUser, cache -> cache.stats().evictionCount())
+                .tag("level", "user")
+                .register(meterRegistry);
+        FunctionCounter.builder("token.store.evictions", evictedSessions, LongAdder::sum)
+                .tag("level", "session")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores a session, evicting the user's oldest one when they already have the maximum.
+     *
+     * @param username     the owner of the tokens.
+     * @param sessionId    identifies the session, e.g. the access token id.
+     * @param accessToken  the access token.
+     * @param refreshToken the refresh token, the session expires with it.
+     */
+    public void storeSession(String username, String sessionId, String accessToken, String refreshToken) {
+        long now = System.currentTimeMillis();
+        Session session = new Session(sessionId, accessToken, refreshToken, now, now + sessionTtlMillis);
+        sessionsByUser.asMap().compute(username, (key, userSessions) -> {
+            Map<String, Session> updated = userSessions == null ? new ConcurrentHashMap<>() : userSessions;
+            removeExpired(updated, now);
+            while (updated.size() >= maxSessionsPerUser && !updated.containsKey(sessionId)) {
+                updated.values().stream()
+                        .min(Comparator.comparingLong(Session::issuedAt))
+                        .ifPresent(oldest -> {
+                            updated.remove(oldest.sessionId());
+                            sessions.decrementAndGet();
+                            evictedSessions.increment();
+                        });
+            }
+            if (updated.put(sessionId, session) == null) {
+                sessions.incrementAndGet();
+            }
+            return updated;
+        });
+    }
+
+    public Optional<Session> getSession(String username, String sessionId) {
+        Map<String, Session> userSessions = sessionsByUser.getIfPresent(username);
+        if (userSessions == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(userSessions.get(sessionId))
+                .filter(session -> !session.isExpired(System.currentTimeMillis()));
+    }
+
+    public List<Session> getSessions(String username) {
+        Map<String, Session> userSessions = sessionsByUser.getIfPresent(username);
+        if (userSessions == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        return userSessions.values().stream()
+                .filter(session -> !session.isExpired(now))
+                .toList();
     }
 
-    public void storeRefreshToken(String username, String refreshToken) {
-        refreshTokenStore.put(username, refreshToken);
-        REFRESHTOKEN = refreshToken;
+    public void removeSession(String username, String sessionId) {
+        sessionsByUser.asMap().computeIfPresent(username, (key, userSessions) -> {
+            if (userSessions.remove(sessionId) != null) {
+                sessions.decrementAndGet();
+            }
+            removeExpired(userSessions, System.currentTimeMillis());
+            return userSessions.isEmpty() ? null : userSessions;
+        });
     }
 
-    public String getTokenByUsername(String username) {
-        return tokenStore.get(username);
+    // drops the whole entry of the user and returns its live sessions, so the caller can revoke their tokens
+    public List<Session> removeAllSessions(String username) {
+        Map<String, Session> userSessions = sessionsByUser.asMap().remove(username);
+        if (userSessions == null) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        return userSessions.values().stream()
+                .filter(session -> !session.isExpired(now))
+                .toList();
     }
 
-    public void removeToken(String username) {
-        tokenStore.remove(username);
+    private void removeExpired(Map<String, Session> userSessions, long now) {
+        userSessions.values().removeIf(session -> {
+            if (session.isExpired(now)) {
+                sessions.decrementAndGet();
+                evictedSessions.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    // a user entry lives until its newest session expires; recomputed on every change, so a
+    // logout shortens the entry to the remaining sessions instead of restarting its lifetime
+    private static final class NewestSessionExpiry implements Expiry<String, Map<String, Session>> {
+
+        @Override
+        public long expireAfterCreate(String username, Map<String, Session> userSessions, long currentTime) {
+            long newestExpiry = userSessions.values().stream()
+                    .mapToLong(Session::expiresAt)
+                    .max()
+                    .orElse(0);
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, newestExpiry - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String username, Map<String, Session> userSessions,
+                                      long currentTime, long currentDuration) {
+            return expireAfterCreate(username, userSessions, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String username, Map<String, Session> userSessions,
+                                    long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    public record Session(String sessionId, String accessToken, String refreshToken, long issuedAt, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
     }
 
-}
\ No newline at end of file
+}
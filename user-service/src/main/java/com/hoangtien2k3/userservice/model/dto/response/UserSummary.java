@@ -0,0 +1,23 @@
+package com.hoangtien2k3.userservice.model.dto.response;
+
+import lombok.*;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+
+    private Long id;
+    private String fullname;
+    private String username;
+    private String email;
+    private String gender;
+    private String phone;
+    private String avatar;
+    private Set<String> roles;
+
+}
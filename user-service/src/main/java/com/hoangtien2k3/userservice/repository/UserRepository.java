@@ -1,11 +1,16 @@
 package com.hoangtien2k3.userservice.repository;
 
 import com.hoangtien2k3.userservice.model.entity.User;
+import com.hoangtien2k3.userservice.repository.projection.UserIdentityView;
+import com.hoangtien2k3.userservice.repository.projection.UserRoleView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,4 +45,25 @@ public interface UserRepository extends JpaRepository<User, Long> {
             "END FROM User u WHERE u.phone = :phone")
     Boolean existsByPhoneNumber(@Param("phone") String phone);
 
+    // one round trip for the three signup uniqueness checks, at most one row per unique column
+    @Query("SELECT new com.hoangtien2k3.userservice.repository.projection.UserIdentityView(u.username, u.email, u.phone) " +
+            "FROM User u WHERE u.username = :username OR u.email = :email OR u.phone = :phone")
+    List<UserIdentityView> findIdentityConflicts(@Param("username") String username,
+                                                 @Param("email") String email,
+                                                 @Param("phone") String phone);
+
+    // users and their roles in one query, without loading the entities or their lazy role sets
+    @Query("SELECT new com.hoangtien2k3.userservice.repository.projection.UserRoleView(" +
+            "u.id, u.fullname, u.username, u.email, u.gender, u.phone, u.avatar, r.name) " +
+            "FROM User u LEFT JOIN u.roles r WHERE u.id IN :ids")
+    List<UserRoleView> findUserRolesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // only replaces the hash that was checked, a password changed in the meantime is kept
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int updatePassword(@Param("id") Long id,
+                       @Param("oldPassword") String oldPassword,
+                       @Param("newPassword") String newPassword);
+
 }
@@ -0,0 +1,7 @@
+package com.hoangtien2k3.userservice.repository.projection;
+
+// the unique columns of a user, read to report which of them a signup collides with
+public record UserIdentityView(String username,
+                               String email,
+                               String phone) {
+}
@@ -0,0 +1,14 @@
+package com.hoangtien2k3.userservice.repository.projection;
+
+import com.hoangtien2k3.userservice.model.entity.RoleName;
+
+// one row per user and role, so a batch of users and their roles comes back from a single join
+public record UserRoleView(Long id,
+                           String fullname,
+                           String username,
+                           String email,
+                           String gender,
+                           String phone,
+                           String avatar,
+                           RoleName role) {
+}
@@ -1,16 +1,20 @@
 package com.hoangtien2k3.userservice.security.jwt;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
+import com.hoangtien2k3.commonlib.security.revocation.TokenDenylist;
 import com.hoangtien2k3.userservice.security.userprinciple.UserPrinciple;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.security.core.GrantedAuthority;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Component
@@ -24,7 +28,18 @@ public class JwtProvider {
     @Value("${jwt.refreshExpiration}")
     private int jwtRefreshExpiration;
 
+    @Autowired
+    private JwtVerifier jwtVerifier;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
     public String createToken(Authentication authentication) {
+        return createToken(authentication, UUID.randomUUID().toString());
+    }
+
+    // the token id (jti) names the login session, so a logout can revoke and forget exactly this one
+    public String createToken(Authentication authentication, String tokenId) {
         UserPrinciple userPrinciple = (UserPrinciple) authentication.getPrincipal();
 
         List<String> authorities = userPrinciple.getAuthorities().stream()
@@ -32,7 +47,9 @@ public class JwtProvider {
                 .collect(Collectors.toList());
 
         return Jwts.builder()
+                .setId(tokenId)
                 .setSubject(userPrinciple.getUsername())
+                .claim("id", userPrinciple.id())
                 .claim("authorities", authorities)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(new Date().getTime() + jwtExpiration * 1000L))
@@ -50,29 +67,19 @@ public class JwtProvider {
                 .compact();
     }
 
-    public String reduceTokenExpiration(String token) {
-        // Decode the token to extract its claims
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
-
-        // Reduce the expiration time by setting it to a past date
-        claims.setExpiration(new Date(0));
-
-        // Build a new token with the updated expiration time
-        return Jwts.builder()
-                .setClaims(claims)
-                .signWith(SignatureAlgorithm.HS512, jwtSecret)
-                .compact();
+    public Boolean validateToken(String token) {
+        return parseClaims(token) != null;
     }
 
-    public Boolean validateToken(String token) {
+    // verifies the signature and expiry once per request and returns the claims, or null for an invalid or revoked token
+    public Claims parseClaims(String token) {
         try {
-            Jwts.parser()
-                    .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token);
-            return true;
+            Claims claims = jwtVerifier.verifyForRequest(token);
+            if (tokenDenylist.isRevoked(claims.getId())) {
+                logger.error("Revoked JWT Token -> jti: {}", claims.getId());
+                return null;
+            }
+            return claims;
         } catch (SignatureException e) {
             logger.error("Invalid JWT signature -> Message: ", e);
         } catch (MalformedJwtException e) {
@@ -84,20 +91,12 @@ public class JwtProvider {
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty -> Message: ", e);
         }
-        return false;
+        return null;
     }
 
     public String getUserNameFromToken(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            return claims.getSubject();
-        } catch (Exception e) {
-            return null;
-        }
+        Claims claims = parseClaims(token);
+        return claims == null ? null : claims.getSubject();
     }
 
 }
@@ -1,20 +1,28 @@
 package com.hoangtien2k3.userservice.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hoangtien2k3.userservice.security.userprinciple.UserDetailService;
+import com.hoangtien2k3.userservice.security.userprinciple.UserPrinciple;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 
 public class JwtTokenFilter extends OncePerRequestFilter {
 
@@ -26,16 +34,41 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailService userDetailService;
 
+    // builds the principal from the verified claims instead of loading the user on every request
+    @Value("${jwt.stateless-principal:true}")
+    private boolean statelessPrincipal;
+
+    // 0 disables the principal cache
+    @Value("${jwt.principal-cache.max-size:10000}")
+    private long principalCacheMaxSize;
+
+    @Value("${jwt.expiration}")
+    private int jwtExpiration;
+
+    private Cache<String, UserDetails> principalCache;
+
+    @PostConstruct
+    public void init() {
+        if (statelessPrincipal && principalCacheMaxSize > 0) {
+            principalCache = Caffeine.newBuilder()
+                    .maximumSize(principalCacheMaxSize)
+                    .expireAfterWrite(Duration.ofSeconds(jwtExpiration))
+                    .build();
+        }
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String token = getJwt(request);
+            Claims claims = token == null ? null : jwtProvider.parseClaims(token);
 
-            if (token != null && jwtProvider.validateToken(token)) {
-                String username = jwtProvider.getUserNameFromToken(token);
-                UserDetails userDetails = userDetailService.loadUserByUsername(username);
+            if (claims != null) {
+                UserDetails userDetails = statelessPrincipal
+                        ? getPrincipal(claims)
+                        : userDetailService.loadUserByUsername(claims.getSubject());
                 UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities()
                 );
@@ -43,10 +76,7 @@ public class JwtTokenFilter extends OncePerRequestFilter {
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
 
-                String refreshToken = jwtProvider.createRefreshToken(authenticationToken);
-
                 response.setHeader("Authorization", "Bearer " + token);
-                response.setHeader("Refresh-Token", refreshToken);
             }
 
         } catch (Exception e) {
@@ -56,10 +86,30 @@ public class JwtTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // tokens of one user signed at the same instant carry the same claims, so the pair identifies them
+    private UserDetails getPrincipal(Claims claims) {
+        if (principalCache == null) {
+            return buildPrincipal(claims);
+        }
+        String tokenVersion = claims.getIssuedAt() == null ? "" : String.valueOf(claims.getIssuedAt().getTime());
+        return principalCache.get(claims.getSubject() + ":" + tokenVersion, key -> buildPrincipal(claims));
+    }
+
+    @SuppressWarnings("unchecked")
+    private UserDetails buildPrincipal(Claims claims) {
+        Object id = claims.get("id");
+        List<String> authorities = claims.get("authorities", List.class);
+        if (id == null || authorities == null) {
+            // tokens signed before the id claim existed still need the user from the database
+            return userDetailService.loadUserByUsername(claims.getSubject());
+        }
+        return UserPrinciple.build(((Number) id).longValue(), claims.getSubject(), authorities);
+    }
+
     private String getJwt(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer")) {
-            return authHeader.replace("Bearer", "");
+            return authHeader.replace("Bearer", "").trim();
         }
         return null;
     }
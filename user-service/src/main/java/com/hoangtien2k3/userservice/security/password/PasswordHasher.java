@@ -0,0 +1,92 @@
+package com.hoangtien2k3.userservice.security.password;
+
+import com.hoangtien2k3.userservice.exception.wrapper.PasswordHashRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing on a dedicated pool sized to the cores, so slow BCrypt work never holds
+ * request threads. The queue is bounded and a full queue rejects at once with
+ * {@link PasswordHashRejectedException}: a login spike turns into fast 503s for the excess logins
+ * instead of a slowdown of every endpoint.
+ */
+@Component
+public class PasswordHasher implements DisposableBean {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer matchesTimer;
+    private final Timer encodeTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          // 0 uses one thread per available core, hashing is pure CPU work
+                          @Value("${ecommerce.password-hash.threads:0}") int threads,
+                          @Value("${ecommerce.password-hash.queue-size:64}") int queueSize) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hash.queue.depth", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hash.duration").tag("operation", "matches").register(meterRegistry);
+        this.encodeTimer = Timer.builder("password.hash.duration").tag("operation", "encode").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+    }
+
+    public Mono<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    public Mono<String> encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    // true when the hash uses another algorithm or a lower cost than the configured one
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    // results are handed back on boundedElastic so callers' blocking work never runs on the hash threads
+    private <T> Mono<T> submit(Timer timer, Supplier<T> task) {
+        return Mono.defer(() -> {
+                    CompletableFuture<T> future;
+                    try {
+                        future = CompletableFuture.supplyAsync(() -> timer.record(task), executor);
+                    } catch (RejectedExecutionException e) {
+                        rejected.increment();
+                        return Mono.error(new PasswordHashRejectedException("Too many password checks in progress, please retry shortly"));
+                    }
+                    return Mono.fromFuture(future);
+                })
+                .publishOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
@@ -50,6 +50,17 @@ public class UserPrinciple implements UserDetails {
                 .build();
     }
 
+    // principal of an already verified access token, it carries no password or profile fields
+    public static UserPrinciple build(Long id, String username, List<String> authorities) {
+        return UserPrinciple.builder()
+                .id(id)
+                .username(username)
+                .roles(authorities.stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return roles;
@@ -1,23 +1,25 @@
 package com.hoangtien2k3.userservice.security.validate;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 
+@Component
 public class AuthorityTokenUtil {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    @Autowired
+    private JwtVerifier jwtVerifier;
 
     public List<String> checkPermission(String token) {
+        if (token.startsWith("Bearer "))
+            token = token.replace("Bearer ", "");
+
         try {
-            Claims claims = Jwts.parser()
-                    .setSigningKey(jwtSecret)
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = jwtVerifier.verifyForRequest(token);
 
             return claims.get("authorities", List.class);
         } catch (Exception e) {
@@ -1,28 +1,29 @@
 package com.hoangtien2k3.userservice.security.validate;
 
+import com.hoangtien2k3.commonlib.security.JwtVerifier;
+import com.hoangtien2k3.commonlib.security.revocation.TokenDenylist;
 import io.jsonwebtoken.*;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TokenValidate {
 
-    @Value("${jwt.secret}")
-    private String SECRET_KEY;
+    @Autowired
+    private JwtVerifier jwtVerifier;
 
-    public boolean validateToken(String token) {
-        if (SECRET_KEY == null || SECRET_KEY.isEmpty())
-            throw new IllegalArgumentException("Not found secret key in structure");
+    @Autowired
+    private TokenDenylist tokenDenylist;
 
+    public boolean validateToken(String token) {
         if (token.startsWith("Bearer "))
             token = token.replace("Bearer ", "");
 
         try {
-            Claims claims = Jwts
-                    .parser()
-                    .setSigningKey(SECRET_KEY)
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = jwtVerifier.verifyForRequest(token);
+            if (tokenDenylist.isRevoked(claims.getId())) {
+                throw new IllegalArgumentException("Token has been revoked.");
+            }
 
             long currentTimeMillis = System.currentTimeMillis();
             return claims.getExpiration().getTime() >= currentTimeMillis;
@@ -11,8 +11,11 @@ import com.hoangtien2k3.userservice.service.RoleService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class RoleServiceImpl implements RoleService {
@@ -20,14 +23,29 @@ public class RoleServiceImpl implements RoleService {
     private final RoleRepository roleRepository;
     private final UserRepository userRepository;
 
+    // roles are seed data, loaded once so signup does not query them per requested role
+    private Map<RoleName, Role> rolesByName = Map.of();
+
     @Autowired
     public RoleServiceImpl(RoleRepository roleRepository, UserRepository userRepository) {
         this.roleRepository = roleRepository;
         this.userRepository = userRepository;
     }
 
+    @PostConstruct
+    public void loadRoles() {
+        rolesByName = Map.copyOf(roleRepository.findAll().stream()
+                .filter(role -> role.name() != null)
+                .collect(Collectors.toMap(Role::name, Function.identity(), (first, second) -> first)));
+    }
+
     @Override
     public Optional<Role> findByName(RoleName name) {
+        Role role = name == null ? null : rolesByName.get(name);
+        if (role != null) {
+            return Optional.of(role);
+        }
+        // a role added after startup is still found, just not cached
         return Optional.ofNullable(roleRepository.findByName(name)
                 .orElseThrow(() -> new RoleNotFoundException("Role Not Found with name: " + name)));
     }
@@ -1,33 +1,44 @@
 package com.hoangtien2k3.userservice.service.impl;
 
-import com.google.gson.Gson;
+import com.hoangtien2k3.commonlib.kafka.event.EmailEvent;
+import com.hoangtien2k3.commonlib.kafka.event.TokenRevokedEvent;
+import com.hoangtien2k3.commonlib.security.revocation.TokenDenylist;
+import com.hoangtien2k3.commonlib.security.revocation.TokenRevocationListener;
 import com.hoangtien2k3.userservice.constant.KafkaConstant;
 import com.hoangtien2k3.userservice.event.EventProducer;
 import com.hoangtien2k3.userservice.exception.wrapper.*;
+import com.hoangtien2k3.userservice.model.dto.model.TokenManager;
 import com.hoangtien2k3.userservice.model.dto.request.*;
 import com.hoangtien2k3.userservice.model.dto.response.InformationMessage;
 import com.hoangtien2k3.userservice.model.dto.response.JwtResponseMessage;
+import com.hoangtien2k3.userservice.model.dto.response.UserSummary;
 import com.hoangtien2k3.userservice.model.entity.RoleName;
 import com.hoangtien2k3.userservice.model.entity.User;
 import com.hoangtien2k3.userservice.repository.UserRepository;
+import com.hoangtien2k3.userservice.repository.projection.UserIdentityView;
+import com.hoangtien2k3.userservice.repository.projection.UserRoleView;
 import com.hoangtien2k3.userservice.security.jwt.JwtProvider;
+import com.hoangtien2k3.userservice.security.password.PasswordHasher;
 import com.hoangtien2k3.userservice.security.userprinciple.UserDetailService;
 import com.hoangtien2k3.userservice.security.userprinciple.UserPrinciple;
 import com.hoangtien2k3.userservice.service.RoleService;
 import com.hoangtien2k3.userservice.service.UserService;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.util.context.Context;
@@ -38,19 +49,31 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class UserServiceImpl implements UserService {
+    public static final int MAX_LOOKUP_IDS = 1000;
+    // keeps each IN list, and the rows one query returns, small
+    private static final int LOOKUP_CHUNK_SIZE = 200;
+
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
     private final JwtProvider jwtProvider;
     private final UserDetailService userDetailsService;
     private final ModelMapper modelMapper;
     private final RoleService roleService;
 
-    Gson gson = new Gson(); // google.code.gson
     @Autowired
     EventProducer eventProducer;
 
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
+    @Autowired
+    private TokenManager tokenManager;
+
     @Autowired
     private WebClient.Builder webClientBuilder;
 
@@ -59,14 +82,12 @@ public class UserServiceImpl implements UserService {
 
     @Autowired
     public UserServiceImpl(UserRepository userRepository,
-                           PasswordEncoder passwordEncoder,
                            JwtProvider jwtProvider,
                            UserDetailService userDetailsService,
                            ModelMapper modelMapper,
                            RoleService roleService
     ) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
         this.jwtProvider = jwtProvider;
         this.userDetailsService = userDetailsService;
         this.modelMapper = modelMapper;
@@ -76,29 +97,65 @@ public class UserServiceImpl implements UserService {
     @Override
     public Mono<User> register(SignUp signUp) {
         return Mono.defer(() -> {
-            if (existsByUsername(signUp.getUsername())) {
-                return Mono.error(new EmailOrUsernameNotFoundException("The username " + signUp.getUsername() + " is existed, please try again."));
+            List<UserIdentityView> conflicts = userRepository.findIdentityConflicts(
+                    signUp.getUsername(), signUp.getEmail(), signUp.getPhone());
+            // the default MySQL collation compares case-insensitively, so do the same here
+            if (conflicts.stream().anyMatch(conflict -> signUp.getUsername().equalsIgnoreCase(conflict.username()))) {
+                return Mono.error(usernameExists(signUp));
             }
-            if (existsByEmail(signUp.getEmail())) {
-                return Mono.error(new EmailOrUsernameNotFoundException("The email " + signUp.getEmail() + " is existed, please try again."));
+            if (conflicts.stream().anyMatch(conflict -> signUp.getEmail().equalsIgnoreCase(conflict.email()))) {
+                return Mono.error(emailExists(signUp));
             }
-            if (existsByPhoneNumber(signUp.getPhone())) {
-                return Mono.error(new PhoneNumberNotFoundException("The phone number " + signUp.getPhone() + " is existed, please try again."));
+            if (signUp.getPhone() != null && conflicts.stream().anyMatch(conflict -> signUp.getPhone().equals(conflict.phone()))) {
+                return Mono.error(phoneExists(signUp));
             }
 
+            return passwordHasher.encode(signUp.getPassword());
+        }).map(encodedPassword -> {
             User user = modelMapper.map(signUp, User.class);
-            user.setPassword(passwordEncoder.encode(signUp.getPassword()));
+            user.setPassword(encodedPassword);
             user.setRoles(signUp.getRoles()
                     .stream()
                     .map(role -> roleService.findByName(mapToRoleName(role))
                             .orElseThrow(() -> new RuntimeException("Role not found in the database.")))
                     .collect(Collectors.toSet()));
 
-            userRepository.save(user);
-            return Mono.just(user);
+            try {
+                userRepository.save(user);
+            } catch (DataIntegrityViolationException e) {
+                throw toConflict(e, signUp);
+            }
+            return user;
         });
     }
 
+    // the unique constraints are the final guard when a concurrent signup wins between the check and the insert
+    private RuntimeException toConflict(DataIntegrityViolationException e, SignUp signUp) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase();
+        if (message.contains("unique_username")) {
+            return usernameExists(signUp);
+        }
+        if (message.contains("unique_email")) {
+            return emailExists(signUp);
+        }
+        if (message.contains("unique_phone")) {
+            return phoneExists(signUp);
+        }
+        return e;
+    }
+
+    private RuntimeException usernameExists(SignUp signUp) {
+        return new EmailOrUsernameNotFoundException("The username " + signUp.getUsername() + " is existed, please try again.");
+    }
+
+    private RuntimeException emailExists(SignUp signUp) {
+        return new EmailOrUsernameNotFoundException("The email " + signUp.getEmail() + " is existed, please try again.");
+    }
+
+    private RuntimeException phoneExists(SignUp signUp) {
+        return new PhoneNumberNotFoundException("The phone number " + signUp.getPhone() + " is existed, please try again.");
+    }
+
     private RoleName mapToRoleName(String roleName) {
         return switch (roleName) {
             case "ADMIN", "admin", "Admin" -> RoleName.ADMIN;
@@ -111,136 +168,164 @@ public class UserServiceImpl implements UserService {
     @Override
     public Mono<JwtResponseMessage> login(Login signInForm) {
         return Mono.fromCallable(() -> {
-            String usernameOrEmail = signInForm.getUsername();
-            boolean isEmail = usernameOrEmail.contains("@gmail.com");
-
-            UserDetails userDetails;
-            if (isEmail) {
-                userDetails = userDetailsService.loadUserByEmail(usernameOrEmail);
-            } else {
-                userDetails = userDetailsService.loadUserByUsername(usernameOrEmail);
-            }
-
-            // check username
-            if (userDetails == null) {
-                throw new UserNotFoundException("User not found");
-            }
-
-            // Check password
-            if (!passwordEncoder.matches(signInForm.getPassword(), userDetails.getPassword())) {
-                throw new PasswordNotFoundException("Incorrect password");
-            }
+                    String usernameOrEmail = signInForm.getUsername();
+                    boolean isEmail = usernameOrEmail.contains("@gmail.com");
+
+                    UserDetails userDetails;
+                    if (isEmail) {
+                        userDetails = userDetailsService.loadUserByEmail(usernameOrEmail);
+                    } else {
+                        userDetails = userDetailsService.loadUserByUsername(usernameOrEmail);
+                    }
+
+                    // check username
+                    if (userDetails == null) {
+                        throw new UserNotFoundException("User not found");
+                    }
+                    return (UserPrinciple) userDetails;
+                })
+                // Check password, on the password hash pool instead of the request thread
+                .flatMap(userPrinciple -> passwordHasher.matches(signInForm.getPassword(), userPrinciple.getPassword())
+                        .flatMap(matches -> matches
+                                ? Mono.just(userPrinciple)
+                                : Mono.<UserPrinciple>error(new PasswordNotFoundException("Incorrect password"))))
+                .doOnNext(userPrinciple -> rehashIfNeeded(userPrinciple, signInForm.getPassword()))
+                .map(userPrinciple -> {
+                    Authentication authentication = new UsernamePasswordAuthenticationToken(
+                            userPrinciple,
+                            signInForm.getPassword(),
+                            userPrinciple.getAuthorities()
+                    );
+
+                    String sessionId = UUID.randomUUID().toString();
+                    String accessToken = jwtProvider.createToken(authentication, sessionId);
+                    String refreshToken = jwtProvider.createRefreshToken(authentication);
+                    tokenManager.storeSession(userPrinciple.getUsername(), sessionId, accessToken, refreshToken);
+
+                    return JwtResponseMessage.builder()
+                            .accessToken(accessToken)
+                            .refreshToken(refreshToken)
+                            .information(InformationMessage.builder()
+                                    .id(userPrinciple.id())
+                                    .fullname(userPrinciple.fullname())
+                                    .username(userPrinciple.username())
+                                    .email(userPrinciple.email())
+                                    .phone(userPrinciple.phone())
+                                    .gender(userPrinciple.gender())
+                                    .avatar(userPrinciple.avatar())
+                                    .roles(userPrinciple.roles())
+                                    .build())
+                            .build();
+                });
+    }
 
-            Authentication authentication = new UsernamePasswordAuthenticationToken(
-                    userDetails,
-                    signInForm.getPassword(),
-                    userDetails.getAuthorities()
-            );
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-            String accessToken = jwtProvider.createToken(authentication);
-            String refreshToken = jwtProvider.createRefreshToken(authentication);
-
-            UserPrinciple userPrinciple = (UserPrinciple) userDetails;
-
-            return JwtResponseMessage.builder()
-                    .accessToken(accessToken)
-                    .refreshToken(refreshToken)
-                    .information(InformationMessage.builder()
-                            .id(userPrinciple.id())
-                            .fullname(userPrinciple.fullname())
-                            .username(userPrinciple.username())
-                            .email(userPrinciple.email())
-                            .phone(userPrinciple.phone())
-                            .gender(userPrinciple.gender())
-                            .avatar(userPrinciple.avatar())
-                            .roles(userPrinciple.roles())
-                            .build())
-                    .build();
-        }).onErrorResume(Mono::error);
+    // a hash in another algorithm or below the configured cost is replaced in the background,
+    // a busy hash pool just leaves it for a later login
+    private void rehashIfNeeded(UserPrinciple userPrinciple, String rawPassword) {
+        String currentHash = userPrinciple.getPassword();
+        if (!passwordHasher.upgradeEncoding(currentHash)) {
+            return;
+        }
+        passwordHasher.encode(rawPassword)
+                .map(newHash -> userRepository.updatePassword(userPrinciple.id(), currentHash, newHash))
+                .subscribe(updated -> {
+                }, error -> log.warn("Password rehash skipped for user {}: {}", userPrinciple.id(), error.getMessage()));
     }
 
 
     @Override
-    public Mono<Void> logout() {
+    public Mono<Void> logout(String token) {
         return Mono.defer(() -> {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-            SecurityContextHolder.getContext().setAuthentication(null);
-
-            String currentToken = getCurrentToken();
+            SecurityContextHolder.clearContext();
 
-            if (authentication != null && authentication.isAuthenticated()) {
-                // Invalidate the current token by reducing its expiration time
-                String updatedToken = jwtProvider.reduceTokenExpiration(currentToken);
+            Claims claims = jwtProvider.parseClaims(token);
+            // tokens signed before the jti claim existed cannot be revoked and stay valid until they expire
+            if (claims == null || claims.getId() == null || claims.getExpiration() == null) {
+                return Mono.empty();
             }
 
-            SecurityContextHolder.clearContext();
-
-            return Mono.empty();
+            tokenManager.removeSession(claims.getSubject(), claims.getId());
+            return revoke(claims.getSubject(), claims.getId(), claims.getExpiration().getTime());
         });
     }
 
-    private String getCurrentToken() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-        if (authentication != null && authentication.isAuthenticated()) {
-            Object credentials = authentication.getCredentials();
+    // denylisted here at once, the other services denylist it from the revocation topic
+    private Mono<Void> revoke(String username, String jti, long expiresAt) {
+        tokenDenylist.revoke(jti, expiresAt);
 
-            if (credentials instanceof String) {
-                return (String) credentials;
-            }
-        }
+        TokenRevokedEvent tokenRevokedEvent = TokenRevokedEvent.newBuilder()
+                .setJti(jti)
+                .setExpiresAt(expiresAt)
+                .setUsername(username)
+                .build();
+        return eventProducer.send(TokenRevocationListener.TOPIC, jti, tokenRevokedEvent).then();
+    }
 
-        return null;
+    // a session outlives its access token, so revoking until the session expiry covers every token of it
+    private Mono<Void> revokeAllSessions(String username) {
+        return Flux.fromIterable(tokenManager.removeAllSessions(username))
+                .flatMap(session -> revoke(username, session.sessionId(), session.expiresAt()))
+                .then();
     }
 
-    @Transactional
+    // the new password is hashed on the password hash pool, a saturated pool rejects the update
     @Override
     public Mono<User> update(Long id, SignUp updateDTO) {
-        try {
-            User existingUser = userRepository.findById(id)
-                    .orElseThrow(() -> new UserNotFoundException("User not found userId: " + id + " for update"));
-
-            modelMapper.map(updateDTO, existingUser);
-            existingUser.setPassword(passwordEncoder.encode(updateDTO.getPassword()));
-
-            return Mono.just(userRepository.save(existingUser));
-        } catch (Exception e) {
-            return Mono.error(e);
-        }
+        return Mono.fromCallable(() -> userRepository.findById(id)
+                        .orElseThrow(() -> new UserNotFoundException("User not found userId: " + id + " for update")))
+                .flatMap(existingUser -> passwordHasher.encode(updateDTO.getPassword())
+                        .map(encodedPassword -> {
+                            modelMapper.map(updateDTO, existingUser);
+                            existingUser.setPassword(encodedPassword);
+                            return userRepository.save(existingUser);
+                        }));
     }
 
-    @Transactional
     @Override
     public Mono<String> changePassword(ChangePasswordRequest request) {
+        User existingUser;
         try {
             UserDetails userDetails = getCurrentUserDetails();
             String username = userDetails.getUsername();
 
-            User existingUser = findByUsername(username)
+            existingUser = findByUsername(username)
                     .orElseThrow(() -> new UserNotFoundException("User not found with username " + username));
-
-            if (passwordEncoder.matches(request.getOldPassword(), userDetails.getPassword())) {
-                if (validateNewPassword(request.getNewPassword(), request.getConfirmPassword())) {
-                    existingUser.setPassword(passwordEncoder.encode(request.getNewPassword()));
-                    userRepository.save(existingUser);
-
-                    // send email through kafka client
-                    EmailDetails emailDetails = emailDetailsConfig(username);
-
-                    return eventProducer.send(KafkaConstant.PROFILE_ONBOARDING_TOPIC, gson.toJson(emailDetails))
-                            .thenReturn("Password changed successfully")
-                            .publishOn(Schedulers.boundedElastic());
-                }
-
-                return Mono.just("Password changed failed.");
-            } else {
-                return Mono.error(new PasswordNotFoundException("Incorrect password"));
-            }
         } catch (Exception e) {
             return Mono.error(new UserNotAuthenticatedException("Transaction silently rolled back"));
         }
+
+        String username = existingUser.getUsername();
+        String currentHash = existingUser.getPassword();
+        return passwordHasher.matches(request.getOldPassword(), currentHash)
+                .flatMap(matches -> {
+                    if (!matches) {
+                        return Mono.error(new PasswordNotFoundException("Incorrect password"));
+                    }
+                    if (!validateNewPassword(request.getNewPassword(), request.getConfirmPassword())) {
+                        return Mono.just("Password changed failed.");
+                    }
+                    return passwordHasher.encode(request.getNewPassword())
+                            .flatMap(newHash -> {
+                                // only replaces the hash that was checked, a concurrent change wins
+                                if (userRepository.updatePassword(existingUser.getId(), currentHash, newHash) == 0) {
+                                    return Mono.just("Password changed failed.");
+                                }
+
+                                // send email through kafka client, once the tokens issued with the old password are revoked
+                                EmailDetails emailDetails = emailDetailsConfig(username);
+                                EmailEvent emailEvent = EmailEvent.newBuilder()
+                                        .setRecipient(emailDetails.getRecipient())
+                                        .setMsgBody(emailDetails.getMsgBody())
+                                        .setSubject(emailDetails.getSubject())
+                                        .setAttachment(emailDetails.getAttachment())
+                                        .build();
+
+                                return revokeAllSessions(username)
+                                        .then(eventProducer.send(KafkaConstant.PROFILE_ONBOARDING_TOPIC, username, emailEvent))
+                                        .thenReturn("Password changed successfully")
+                                        .publishOn(Schedulers.boundedElastic());
+                            });
+                });
     }
 
     private EmailDetails emailDetailsConfig(String username) {
@@ -317,6 +402,43 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new UserNotFoundException("User not found with userName: " + userName)));
     }
 
+    // ids that do not exist are skipped, so the map has at most one entry per requested id
+    @Override
+    public Mono<Map<Long, UserSummary>> findAllByIds(Collection<Long> userIds) {
+        List<Long> distinctIds = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        if (distinctIds.size() > MAX_LOOKUP_IDS) {
+            return Mono.error(new IllegalArgumentException("At most " + MAX_LOOKUP_IDS + " user ids can be fetched at once"));
+        }
+        return Mono.fromCallable(() -> {
+                    Map<Long, UserSummary> users = new LinkedHashMap<>();
+                    for (int from = 0; from < distinctIds.size(); from += LOOKUP_CHUNK_SIZE) {
+                        List<Long> chunk = distinctIds.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, distinctIds.size()));
+                        userRepository.findUserRolesByIdIn(chunk).forEach(row -> addUserRole(users, row));
+                    }
+                    return users;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void addUserRole(Map<Long, UserSummary> users, UserRoleView row) {
+        UserSummary user = users.computeIfAbsent(row.id(), id -> UserSummary.builder()
+                .id(row.id())
+                .fullname(row.fullname())
+                .username(row.username())
+                .email(row.email())
+                .gender(row.gender())
+                .phone(row.phone())
+                .avatar(row.avatar())
+                .roles(new LinkedHashSet<>())
+                .build());
+        if (row.role() != null) {
+            user.getRoles().add(row.role().name());
+        }
+    }
+
     @Override
     public Page<UserDto> findAllUsers(int page, int size, String sortBy, String sortOrder) {
         Sort sort = Sort.by(Sort.Direction.fromString(sortOrder), sortBy);